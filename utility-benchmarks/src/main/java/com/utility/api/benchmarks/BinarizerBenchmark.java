@@ -0,0 +1,91 @@
+package com.utility.api.benchmarks;
+
+import com.utility.api.core.ocr.processor.BinarizationProperties;
+import com.utility.api.core.ocr.processor.Binarizer;
+import com.utility.api.core.ocr.processor.BinarizerConfiguration;
+import com.utility.api.core.ocr.processor.BinarizerType;
+import org.imgscalr.Scalr;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OpenCV against the pure Java binarizer. binarize measures the throughput over the images handed to the binarization
+ * by ImageProcessor. startup runs once per fresh JVM and measures picking the binarizer, native libraries included,
+ * plus binarizing a first image with cold code
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BinarizerBenchmark {
+
+    // Size of the images handed to the binarization by ImageProcessor
+    private static final int BINARIZATION_SIZE = 1000;
+    private static final String STARTUP = "startup";
+
+    @Param({"OPENCV", "JAVA"})
+    public BinarizerType type;
+
+    @Param({"receipt-01.jpg", "receipt-04-large.jpg"})
+    public String receipt;
+
+    private BufferedImage image;
+    private Binarizer binarizer;
+
+    @Setup
+    public void setUp(BenchmarkParams params) throws IOException {
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(Corpus.read(Corpus.RECEIPTS, receipt)));
+        image = Scalr.resize(decoded, Scalr.Method.ULTRA_QUALITY, BINARIZATION_SIZE);
+        if (!params.getBenchmark().endsWith(STARTUP)) {
+            binarizer = createBinarizer();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (binarizer != null) {
+            binarizer.release();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    @Fork(1)
+    public BufferedImage binarize() throws IOException {
+        return binarizer.getBinaryImage(image);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(10)
+    public BufferedImage startup() throws IOException {
+        binarizer = createBinarizer();
+        return binarizer.getBinaryImage(image);
+    }
+
+    private Binarizer createBinarizer() {
+        BinarizationProperties properties = new BinarizationProperties();
+        properties.setType(type);
+        properties.setThreads(1);
+        return new BinarizerConfiguration().binarizer(properties);
+    }
+}
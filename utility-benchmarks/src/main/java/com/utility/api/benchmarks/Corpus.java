@@ -0,0 +1,71 @@
+package com.utility.api.benchmarks;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Resources;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Access to the sample receipts checked in under src/main/resources/corpus. Each folder holds an index.txt file
+ * listing its entries, so the corpus can be read from the benchmarks jar as well
+ */
+public class Corpus {
+
+    public static final String RECEIPTS = "corpus/receipts/";
+    public static final String TEXTS = "corpus/text/";
+
+    private static final String INDEX = "index.txt";
+    private static final String TRUTH = "truth.properties";
+
+    /**
+     * @param folder    Corpus folder, {@link #RECEIPTS} or {@link #TEXTS}
+     *
+     * @return Names of the entries of the folder
+     */
+    public static List<String> list(String folder) throws IOException {
+        List<String> names = new ArrayList<>();
+        for (String line : Resources.readLines(getResource(folder + INDEX), StandardCharsets.UTF_8)) {
+            if (!line.trim().isEmpty()) {
+                names.add(line.trim());
+            }
+        }
+        return names;
+    }
+
+    public static byte[] read(String folder, String name) throws IOException {
+        try (InputStream input = getResource(folder + name).openStream()) {
+            return ByteStreams.toByteArray(input);
+        }
+    }
+
+    public static String readText(String name) throws IOException {
+        return new String(read(TEXTS, name), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param receipt   Name of a receipt image
+     *
+     * @return The text printed on the receipt
+     */
+    public static String readTruth(String receipt) throws IOException {
+        Properties truth = new Properties();
+        try (InputStream input = getResource(RECEIPTS + TRUTH).openStream()) {
+            truth.load(input);
+        }
+        String name = truth.getProperty(receipt);
+        if (name == null) {
+            throw new IOException("No text known for receipt " + receipt);
+        }
+        return readText(name);
+    }
+
+    private static URL getResource(String path) {
+        return Resources.getResource(Corpus.class, "/" + path);
+    }
+}
@@ -0,0 +1,117 @@
+package com.utility.api.benchmarks;
+
+import com.utility.api.core.processor.ProcessContext;
+import com.utility.api.core.processor.impl.TicketLineProcessor;
+import com.utility.api.core.processor.rules.ParserRuleSet;
+import com.utility.api.core.processor.rules.ParserRules;
+import com.utility.api.entity.TicketLine;
+import com.utility.api.entity.TicketLineBatch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Line parsing of recognized text using {@link TicketLineProcessor#processList(ProcessContext)} and its columnar
+ * counterpart {@link TicketLineProcessor#processBatch(ProcessContext, TicketLineBatch)}. Run with -prof gc to compare
+ * the allocation rate of both.
+ *
+ * processSingle measures the average time of a single line as the scan service parses it, with the built-in rules and
+ * with a store rule set dropping total lines, so the cost of rules loaded at runtime can be compared with the built-in
+ * ones
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParsingBenchmark {
+
+    @Param({"receipt-01.txt", "receipt-02.txt", "receipt-03.txt"})
+    public String text;
+
+    private String rawData;
+    private TicketLineProcessor processor;
+
+    @Setup
+    public void setUp() throws IOException {
+        processor = new TicketLineProcessor();
+        rawData = Corpus.readText(text);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public List<TicketLine> processList() {
+        return processor.processList(new ProcessContext(rawData));
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public List<TicketLine> processListParallel() {
+        return processor.processList(new ProcessContext(rawData));
+    }
+
+    @Benchmark
+    @Threads(1)
+    public TicketLineBatch processBatch() {
+        TicketLineBatch batch = new TicketLineBatch();
+        processor.processBatch(new ProcessContext(rawData), batch);
+        return batch;
+    }
+
+    @Benchmark
+    @Threads(1)
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public TicketLine processSingle(Lines lines) {
+        return processor.processSingle(lines.next());
+    }
+
+    /**
+     * Lines of the text, each one in its own context as the scan service parses them
+     */
+    @State(Scope.Thread)
+    public static class Lines {
+
+        @Param({ParserRules.DEFAULT_NAME, "store"})
+        public String rules;
+
+        private ProcessContext[] contexts;
+        private int next;
+
+        @Setup
+        public void setUp(ParsingBenchmark benchmark) {
+            ParserRules compiled = ParserRules.DEFAULT_NAME.equals(rules) ? ParserRules.DEFAULT : createStoreRules();
+            contexts = Arrays.stream(benchmark.rawData.split("\n"))
+                    .map(line -> new ProcessContext(line, compiled))
+                    .toArray(ProcessContext[]::new);
+        }
+
+        ProcessContext next() {
+            ProcessContext context = contexts[next];
+            next = next + 1 < contexts.length ? next + 1 : 0;
+            return context;
+        }
+
+        private static ParserRules createStoreRules() {
+            ParserRuleSet ruleSet = new ParserRuleSet();
+            ruleSet.setName("store");
+            ruleSet.setIgnoredPrefixes(Arrays.asList("TOTAL", "IVA", "EFECTIVO", "CAMBIO", "ENTREGADO"));
+            return ParserRules.compile(ruleSet);
+        }
+    }
+}
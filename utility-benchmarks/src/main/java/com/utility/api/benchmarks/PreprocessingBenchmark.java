@@ -0,0 +1,97 @@
+package com.utility.api.benchmarks;
+
+import com.utility.api.core.ocr.processor.ImageProcessor;
+import com.utility.api.core.ocr.processor.ImageProperties;
+import com.utility.api.core.ocr.processor.OpenCVProcessor;
+import org.imgscalr.Scalr;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Image preprocessing stages: decoding, the whole decode/binarize/scale chain of {@link ImageProcessor} and the OpenCV
+ * binarization on its own
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PreprocessingBenchmark {
+
+    // Size of the images handed to the binarization by ImageProcessor
+    private static final int BINARIZATION_SIZE = 1000;
+
+    @Param({"receipt-01.jpg", "receipt-02.png", "receipt-03-dark.jpg", "receipt-04-large.jpg"})
+    public String receipt;
+
+    private byte[] content;
+    private BufferedImage scaled;
+    private OpenCVProcessor openCVProcessor;
+    private ImageProcessor imageProcessor;
+
+    @Setup
+    public void setUp() throws IOException {
+        openCVProcessor = new OpenCVProcessor();
+        imageProcessor = new ImageProcessor(openCVProcessor, new ImageProperties());
+        content = Corpus.read(Corpus.RECEIPTS, receipt);
+        scaled = Scalr.resize(decode(), Scalr.Method.ULTRA_QUALITY, BINARIZATION_SIZE);
+    }
+
+    @TearDown
+    public void tearDown() {
+        openCVProcessor.release();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public BufferedImage decode() throws IOException {
+        return imageProcessor.decode(new ByteArrayInputStream(content));
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public BufferedImage decodeParallel() throws IOException {
+        return decode();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public BufferedImage decodeAndScale() throws IOException {
+        return imageProcessor.processAndScale(decode());
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public BufferedImage decodeAndScaleParallel() throws IOException {
+        return decodeAndScale();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public BufferedImage binarize() throws IOException {
+        return openCVProcessor.getBinaryImage(scaled);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public BufferedImage binarizeParallel() throws IOException {
+        return binarize();
+    }
+}
@@ -0,0 +1,201 @@
+package com.utility.api.benchmarks;
+
+import com.utility.api.core.ocr.OcrEngine;
+import com.utility.api.core.ocr.OcrEngineProperties;
+import com.utility.api.core.ocr.exception.OcrException;
+import com.utility.api.core.ocr.processor.ImageProcessor;
+import com.utility.api.core.ocr.processor.ImageProperties;
+import com.utility.api.core.ocr.processor.LayoutAnalyzer;
+import com.utility.api.core.ocr.processor.LayoutProperties;
+import com.utility.api.core.ocr.processor.OpenCVProcessor;
+import com.utility.api.core.ocr.utils.ImageUtils;
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.tesseract.TessBaseAPI;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Text recognition: Tesseract alone over an already processed image, either whole or limited to the text regions found
+ * by the {@link LayoutAnalyzer}, and the whole {@link OcrEngine#readImage} including preprocessing and the engine pool
+ *
+ * The trained data is read from the tessdata.path system property (the folder holding tessdata) using the locale
+ * given by tessdata.locale
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RecognitionBenchmark {
+
+    static final String CONFIG_PATH = System.getProperty("tessdata.path", "../utility-core/src/main/resources/");
+    static final String LOCALE = System.getProperty("tessdata.locale", "ENG");
+
+    /**
+     * Corpus image already decoded and processed, shared by every thread
+     */
+    @State(Scope.Benchmark)
+    public static class Receipt {
+
+        @Param({"receipt-01.jpg", "receipt-02.png", "receipt-03-dark.jpg", "receipt-04-large.jpg"})
+        public String receipt;
+
+        byte[] content;
+        BufferedImage decoded;
+        BufferedImage processed;
+        List<Rectangle> regions;
+        ImageProcessor processor;
+        LayoutAnalyzer layout;
+        OpenCVProcessor openCVProcessor;
+
+        @Setup
+        public void setUp() throws IOException {
+            openCVProcessor = new OpenCVProcessor();
+            processor = new ImageProcessor(openCVProcessor, new ImageProperties());
+            layout = new LayoutAnalyzer(new LayoutProperties());
+            content = Corpus.read(Corpus.RECEIPTS, receipt);
+            decoded = decode();
+            processed = ImageUtils.toGrayscale(processor.processAndScale(decode()));
+            regions = layout.findTextRegions(processed);
+        }
+
+        @TearDown
+        public void tearDown() {
+            openCVProcessor.release();
+        }
+
+        BufferedImage decode() throws IOException {
+            return processor.decode(new ByteArrayInputStream(content));
+        }
+    }
+
+    /**
+     * Tesseract engine confined to a benchmark thread
+     */
+    @State(Scope.Thread)
+    public static class Engine {
+
+        TessBaseAPI api;
+
+        @Setup
+        public void setUp() throws OcrException {
+            api = new TessBaseAPI();
+            if (api.Init(CONFIG_PATH, LOCALE) != 0) {
+                throw new OcrException("Could not initialize Tesseract from " + CONFIG_PATH);
+            }
+        }
+
+        @TearDown
+        public void tearDown() {
+            api.End();
+        }
+    }
+
+    /**
+     * OcrEngine with its own pool, as used by the service
+     */
+    @State(Scope.Benchmark)
+    public static class Service {
+
+        OcrEngine engine;
+
+        @Setup
+        public void setUp(Receipt receipt) throws OcrException {
+            OcrEngineProperties properties = new OcrEngineProperties();
+            properties.setConfigPath(CONFIG_PATH);
+            properties.setTrainedLocale(LOCALE);
+            engine = new OcrEngine(properties, receipt.processor, receipt.layout);
+        }
+
+        @TearDown
+        public void tearDown() {
+            engine.stopEngine();
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String recognize(Receipt receipt, Engine engine) {
+        return recognize(receipt.processed, engine.api);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String recognizeParallel(Receipt receipt, Engine engine) {
+        return recognize(receipt.processed, engine.api);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String recognizeRegions(Receipt receipt, Engine engine) {
+        return recognize(receipt.processed, receipt.regions, engine.api);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public List<Rectangle> findTextRegions(Receipt receipt) {
+        return receipt.layout.findTextRegions(receipt.processed);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String readImage(Service service, Receipt receipt) throws OcrException {
+        return service.engine.readImage(receipt.decoded);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String readImageParallel(Service service, Receipt receipt) throws OcrException {
+        return service.engine.readImage(receipt.decoded);
+    }
+
+    private static String recognize(BufferedImage image, List<Rectangle> regions, TessBaseAPI api) {
+        if (regions.isEmpty()) {
+            return recognize(image, api);
+        }
+        api.SetImage(ImageUtils.getGrayscaleData(image), image.getWidth(), image.getHeight(), 1,
+                ImageUtils.getScanlineStride(image));
+        StringBuilder result = new StringBuilder();
+        try {
+            for (Rectangle region : regions) {
+                api.SetRectangle(region.x, region.y, region.width, region.height);
+                BytePointer text = api.GetUTF8Text();
+                result.append(text.getString());
+                text.deallocate();
+            }
+            return result.toString();
+        } finally {
+            api.Clear();
+        }
+    }
+
+    private static String recognize(BufferedImage image, TessBaseAPI api) {
+        api.SetImage(ImageUtils.getGrayscaleData(image), image.getWidth(), image.getHeight(), 1,
+                ImageUtils.getScanlineStride(image));
+        BytePointer text = api.GetUTF8Text();
+        try {
+            return text.getString();
+        } finally {
+            text.deallocate();
+            api.Clear();
+        }
+    }
+}
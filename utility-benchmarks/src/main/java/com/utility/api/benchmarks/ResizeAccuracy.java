@@ -0,0 +1,91 @@
+package com.utility.api.benchmarks;
+
+import com.utility.api.core.ocr.OcrEngine;
+import com.utility.api.core.ocr.OcrEngineProperties;
+import com.utility.api.core.ocr.exception.OcrException;
+import com.utility.api.core.ocr.processor.ImageProcessor;
+import com.utility.api.core.ocr.processor.ImageProperties;
+import com.utility.api.core.ocr.processor.LayoutAnalyzer;
+import com.utility.api.core.ocr.processor.LayoutProperties;
+import com.utility.api.core.ocr.processor.OpenCVProcessor;
+import com.utility.api.core.ocr.processor.ResizeMode;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+/**
+ * Recognizes every corpus receipt with each {@link ResizeMode} and prints the average time of
+ * {@link OcrEngine#readImage} along with the character error rate against the text printed on the receipt: the edit
+ * distance between both texts divided by the length of the printed one, blanks collapsed
+ *
+ *     java -Dtessdata.path=... -cp target/benchmarks.jar com.utility.api.benchmarks.ResizeAccuracy [runs]
+ */
+public class ResizeAccuracy {
+
+    private static final int DEFAULT_RUNS = 5;
+
+    public static void main(String[] args) throws IOException, OcrException {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_RUNS;
+        System.out.println(String.format("%-22s %-9s %10s %8s", "receipt", "mode", "ms", "cer"));
+
+        for (ResizeMode mode : ResizeMode.values()) {
+            ImageProperties imageProperties = new ImageProperties();
+            imageProperties.setResizeMode(mode);
+            OpenCVProcessor openCVProcessor = new OpenCVProcessor();
+            ImageProcessor processor = new ImageProcessor(openCVProcessor, imageProperties);
+            OcrEngineProperties properties = new OcrEngineProperties();
+            properties.setConfigPath(RecognitionBenchmark.CONFIG_PATH);
+            properties.setTrainedLocale(RecognitionBenchmark.LOCALE);
+            properties.setPoolSize(1);
+            OcrEngine engine = new OcrEngine(properties, processor, new LayoutAnalyzer(new LayoutProperties()));
+            try {
+                for (String receipt : Corpus.list(Corpus.RECEIPTS)) {
+                    byte[] content = Corpus.read(Corpus.RECEIPTS, receipt);
+                    String truth = normalize(Corpus.readTruth(receipt));
+                    String text = null;
+                    long elapsed = 0;
+                    // The first run warms up the engine and is not timed
+                    for (int i = 0; i <= runs; i++) {
+                        long start = System.nanoTime();
+                        text = engine.readImage(processor.decode(new ByteArrayInputStream(content)));
+                        if (i > 0) {
+                            elapsed += System.nanoTime() - start;
+                        }
+                    }
+                    float millis = elapsed / 1e6f / Math.max(runs, 1);
+                    float cer = (float) distance(normalize(text), truth) / truth.length();
+                    System.out.println(String.format("%-22s %-9s %10.1f %8.4f", receipt, mode, millis, cer));
+                }
+            } finally {
+                engine.stopEngine();
+                openCVProcessor.release();
+            }
+        }
+    }
+
+    private static String normalize(String text) {
+        return text.replaceAll("\\s+", " ").trim();
+    }
+
+    /**
+     * Levenshtein distance keeping two rows of the matrix
+     */
+    private static int distance(String a, String b) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+}
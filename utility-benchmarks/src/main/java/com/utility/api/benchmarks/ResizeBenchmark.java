@@ -0,0 +1,65 @@
+package com.utility.api.benchmarks;
+
+import com.utility.api.core.ocr.processor.ImageProcessor;
+import com.utility.api.core.ocr.processor.ImageProperties;
+import com.utility.api.core.ocr.processor.OpenCVProcessor;
+import com.utility.api.core.ocr.processor.ResizeMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Preprocessing latency of every {@link ResizeMode}. The accuracy side of the trade-off is measured by
+ * {@link ResizeAccuracy}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResizeBenchmark {
+
+    @Param({"receipt-01.jpg", "receipt-02.png", "receipt-03-dark.jpg", "receipt-04-large.jpg"})
+    public String receipt;
+
+    @Param({"FIXED", "ADAPTIVE"})
+    public ResizeMode resizeMode;
+
+    private OpenCVProcessor openCVProcessor;
+    private ImageProcessor imageProcessor;
+    private BufferedImage image;
+
+    @Setup
+    public void setUp() throws IOException {
+        ImageProperties properties = new ImageProperties();
+        properties.setResizeMode(resizeMode);
+        openCVProcessor = new OpenCVProcessor();
+        imageProcessor = new ImageProcessor(openCVProcessor, properties);
+        image = imageProcessor.decode(new ByteArrayInputStream(Corpus.read(Corpus.RECEIPTS, receipt)));
+    }
+
+    @TearDown
+    public void tearDown() {
+        openCVProcessor.release();
+    }
+
+    @Benchmark
+    public BufferedImage processAndScale() {
+        return imageProcessor.processAndScale(image);
+    }
+}
@@ -0,0 +1,96 @@
+package com.utility.api.benchmarks;
+
+import com.utility.api.core.ocr.processor.BinarizationProperties;
+import com.utility.api.core.ocr.processor.ImageProcessor;
+import com.utility.api.core.ocr.processor.ImageProperties;
+import com.utility.api.core.ocr.processor.OpenCVProcessor;
+import org.imgscalr.Scalr;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of binarizing a 12 megapixel photo split into strips on a growing number of threads, 1 meaning the whole
+ * frame on the calling thread, with and without running the filter chain a cache-sized block of rows at a time.
+ * Setup fails if the stitched image differs in a single pixel from the whole frame binarized one filter at a time
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TiledBinarizationBenchmark {
+
+    private static final double PHOTO_PIXELS = 12_000_000;
+
+    @Param({"receipt-01.jpg", "receipt-04-large.jpg"})
+    public String receipt;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    @Param({"0", "262144"})
+    public int blockSize;
+
+    private OpenCVProcessor openCVProcessor;
+    private BufferedImage photo;
+
+    @Setup
+    public void setUp() throws IOException {
+        BinarizationProperties wholeFrameProperties = new BinarizationProperties();
+        wholeFrameProperties.setThreads(1);
+        wholeFrameProperties.setBlockSize(0);
+        OpenCVProcessor wholeFrame = new OpenCVProcessor(wholeFrameProperties, null);
+        BufferedImage image = new ImageProcessor(wholeFrame, new ImageProperties())
+                .decode(new ByteArrayInputStream(Corpus.read(Corpus.RECEIPTS, receipt)));
+        int width = (int) Math.sqrt(PHOTO_PIXELS * image.getWidth() / image.getHeight());
+        photo = Scalr.resize(image, Scalr.Method.QUALITY, Scalr.Mode.FIT_TO_WIDTH, width);
+
+        BinarizationProperties properties = new BinarizationProperties();
+        properties.setThreads(threads);
+        properties.setBlockSize(blockSize);
+        properties.setTiledMinPixels(0);
+        openCVProcessor = new OpenCVProcessor(properties, null);
+        try {
+            byte[] expected = pixels(wholeFrame.getBinaryImage(photo));
+            if (!Arrays.equals(expected, pixels(openCVProcessor.getBinaryImage(photo)))) {
+                throw new IllegalStateException("Strips binarized on " + threads + " threads differ from the frame");
+            }
+        } finally {
+            wholeFrame.release();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        openCVProcessor.release();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public BufferedImage binarize() throws IOException {
+        return openCVProcessor.getBinaryImage(photo);
+    }
+
+    private static byte[] pixels(BufferedImage image) {
+        return ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+    }
+}
@@ -0,0 +1,17 @@
+package com.utility.api.core.cache;
+
+import com.utility.api.entity.TicketLine;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CachedScan {
+
+    private String text;
+    private List<TicketLine> lines;
+}
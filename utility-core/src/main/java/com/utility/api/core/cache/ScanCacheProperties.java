@@ -0,0 +1,31 @@
+package com.utility.api.core.cache;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix="scan.cache")
+@Data
+public class ScanCacheProperties {
+
+    private Boolean enabled;
+    /** Maximum number of scans held in memory */
+    private Long maximumSize;
+    /** Seconds a scan is kept since it was stored */
+    private Long ttl;
+    /** Directory of the on-disk tier. The tier is disabled when not set */
+    private String diskPath;
+    /** Maximum number of bytes of the on-disk tier, the oldest scans are deleted first */
+    private Long diskMaximumSize;
+    /** Whether the raw OCR text is stored along with the lines */
+    private Boolean keepText;
+    /** Maximum number of bits between the perceptual hashes of two images for the second one to reuse the cached lines
+     * of the first, up to 15. Near duplicates are not looked for when not set or the cache is disabled */
+    private Integer similarThreshold;
+    /** Maximum difference between the aspect ratios of two near-duplicate images, relative to the greater one */
+    private Float similarAspectTolerance;
+    /** Number of recognized images whose perceptual hash is kept, the oldest ones are replaced first */
+    private Integer similarCapacity;
+
+}
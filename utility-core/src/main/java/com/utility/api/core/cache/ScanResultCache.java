@@ -0,0 +1,263 @@
+package com.utility.api.core.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.io.BaseEncoding;
+import com.utility.api.entity.TicketLine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.log4j.Log4j;
+import org.apache.commons.lang3.BooleanUtils;
+import org.apache.commons.lang3.ObjectUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache of scan results keyed by the content of the scanned image. An in-memory tier is always used when the cache is
+ * enabled, results can also be kept on a local directory so they survive restarts. The directory is swept
+ * periodically: expired files are deleted, then the oldest ones while the tier is bigger than its maximum size.
+ * Lines are copied on the way in and out, so neither the scanner nor its clients can alter a cached scan
+ */
+@Log4j
+@Component
+public class ScanResultCache {
+
+    /**
+     * Version of the image processing and parsing pipeline. Must be increased whenever a change alters the recognized
+     * lines, so entries stored by a previous version are no longer used
+     */
+    public static final int PIPELINE_VERSION = 4;
+
+    private static final long DEFAULT_MAXIMUM_SIZE = 10000L;
+    private static final long DEFAULT_TTL = 86400L;
+    private static final long DEFAULT_DISK_MAXIMUM_SIZE = 1024L * 1024 * 1024;
+    private static final long MIN_SWEEP_PERIOD = TimeUnit.SECONDS.toMillis(1);
+    private static final long MAX_SWEEP_PERIOD = TimeUnit.MINUTES.toMillis(10);
+    private static final String REQUESTS_COUNTER = "scan.cache.requests";
+    private static final String FILE_EXTENSION = ".json";
+
+    private final boolean enabled;
+    private final boolean keepText;
+    private final long ttl;
+    private final long diskMaximumSize;
+    private final File directory;
+    private final ScheduledExecutorService sweeper;
+    private final Cache<String, CachedScan> memory;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final Counter hits = Metrics.counter(REQUESTS_COUNTER, "result", "hit");
+    private final Counter diskHits = Metrics.counter(REQUESTS_COUNTER, "result", "disk_hit");
+    private final Counter misses = Metrics.counter(REQUESTS_COUNTER, "result", "miss");
+
+    @Autowired
+    public ScanResultCache(ScanCacheProperties properties) {
+        this.enabled = BooleanUtils.isTrue(properties.getEnabled());
+        this.keepText = BooleanUtils.isTrue(properties.getKeepText());
+        this.ttl = TimeUnit.SECONDS.toMillis(ObjectUtils.defaultIfNull(properties.getTtl(), DEFAULT_TTL));
+        this.memory = CacheBuilder.newBuilder()
+                .maximumSize(ObjectUtils.defaultIfNull(properties.getMaximumSize(), DEFAULT_MAXIMUM_SIZE))
+                .expireAfterWrite(ttl, TimeUnit.MILLISECONDS)
+                .build();
+        this.diskMaximumSize = ObjectUtils.defaultIfNull(properties.getDiskMaximumSize(), DEFAULT_DISK_MAXIMUM_SIZE);
+        if (diskMaximumSize < 0) {
+            throw new IllegalArgumentException("Scan cache disk maximum size cannot be negative");
+        }
+        this.directory = createDirectory(properties.getDiskPath());
+        Metrics.gauge("scan.cache.size", memory, Cache::size);
+
+        if (directory != null) {
+            // Removes the entries that expired while the service was down
+            sweepDisk();
+            long period = Math.max(Math.min(ttl, MAX_SWEEP_PERIOD), MIN_SWEEP_PERIOD);
+            this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "scan-cache-sweeper");
+                thread.setDaemon(true);
+                return thread;
+            });
+            sweeper.scheduleAtFixedRate(this::sweepDisk, period, period, TimeUnit.MILLISECONDS);
+        } else {
+            this.sweeper = null;
+        }
+    }
+
+    @PreDestroy
+    public void stopSweeper() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+    }
+
+    /**
+     * Builds the key of an image. Besides the image content the key depends on the engine locale and profile, the
+     * parser rules and the pipeline version, as all of them change the recognized lines
+     *
+     * @param digest    SHA-256 digest of the image content
+     * @param locale    Locale the image is recognized with, as asked for by the client
+     * @param profile   Name of the engine profile the image is recognized with
+     * @param rules     Fingerprint of the rules the lines are parsed with
+     *
+     * @return Key to be used with {@link #get(String)} and {@link #put(String, CachedScan)}
+     */
+    public String getKey(byte[] digest, String locale, String profile, String rules) {
+        return BaseEncoding.base16().lowerCase().encode(digest) + '-' + locale + '-' + profile + '-' + rules + '-'
+                + PIPELINE_VERSION;
+    }
+
+    /**
+     * Looks a scan up in memory first and then on disk. Scans found on disk are promoted to the memory tier
+     *
+     * @param key   Key obtained from {@link #getKey(byte[], String, String, String)}
+     *
+     * @return A copy of the cached scan or null if not found or the cache is disabled
+     */
+    public CachedScan get(String key) {
+        if (!enabled) {
+            return null;
+        }
+        CachedScan scan = memory.getIfPresent(key);
+        if (scan != null) {
+            hits.increment();
+            return copy(scan, true);
+        }
+        scan = readFromDisk(key);
+        if (scan != null) {
+            diskHits.increment();
+            memory.put(key, scan);
+            return copy(scan, true);
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Stores a copy of a scan in every enabled tier
+     *
+     * @param key   Key obtained from {@link #getKey(byte[], String, String, String)}
+     * @param scan  Scan to be stored
+     */
+    public void put(String key, CachedScan scan) {
+        if (!enabled) {
+            return;
+        }
+        CachedScan entry = copy(scan, keepText);
+        memory.put(key, entry);
+        writeToDisk(key, entry);
+    }
+
+    private CachedScan readFromDisk(String key) {
+        if (directory == null) {
+            return null;
+        }
+        File file = new File(directory, key + FILE_EXTENSION);
+        if (!file.isFile()) {
+            return null;
+        }
+        if (System.currentTimeMillis() - file.lastModified() > ttl) {
+            deleteFile(file);
+            return null;
+        }
+        try {
+            return mapper.readValue(file, CachedScan.class);
+        } catch (IOException e) {
+            log.warn("Could not read cached scan " + file.getName(), e);
+            deleteFile(file);
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, CachedScan scan) {
+        if (directory == null) {
+            return;
+        }
+        File file = new File(directory, key + FILE_EXTENSION);
+        File tmp = new File(directory, key + FILE_EXTENSION + ".tmp");
+        try {
+            // Written aside and then renamed so readers never see a partial file
+            mapper.writeValue(tmp, scan);
+            if (!tmp.renameTo(file)) {
+                deleteFile(tmp);
+            }
+        } catch (IOException e) {
+            log.warn("Could not write cached scan " + file.getName(), e);
+            deleteFile(tmp);
+        }
+    }
+
+    private static CachedScan copy(CachedScan scan, boolean withText) {
+        List<TicketLine> lines = new ArrayList<>(scan.getLines().size());
+        for (TicketLine line : scan.getLines()) {
+            lines.add(new TicketLine(line.getName(), line.getQuantity(), line.getPrice(), line.getPosition()));
+        }
+        return new CachedScan(withText ? scan.getText() : null, lines);
+    }
+
+    /**
+     * Deletes the files that expired, then the oldest ones until the disk tier fits in its maximum size
+     */
+    private void sweepDisk() {
+        try {
+            File[] files = directory.listFiles();
+            if (files == null) {
+                return;
+            }
+            long limit = System.currentTimeMillis() - ttl;
+            List<File> kept = new ArrayList<>(files.length);
+            long size = 0;
+            for (File file : files) {
+                if (file.lastModified() < limit) {
+                    deleteFile(file);
+                } else {
+                    kept.add(file);
+                    size += file.length();
+                }
+            }
+            if (size <= diskMaximumSize) {
+                return;
+            }
+            kept.sort(Comparator.comparingLong(File::lastModified));
+            for (File file : kept) {
+                if (size <= diskMaximumSize) {
+                    break;
+                }
+                size -= file.length();
+                deleteFile(file);
+            }
+        } catch (RuntimeException e) {
+            // An exception would cancel the periodic task
+            log.error("Could not sweep scan cache directory", e);
+        }
+    }
+
+    /**
+     * Creates the directory of the disk tier
+     */
+    private File createDirectory(String path) {
+        if (!enabled || StringUtils.isBlank(path)) {
+            return null;
+        }
+        File dir = new File(path);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            log.error("Could not create scan cache directory " + dir.getAbsolutePath() + ", disk tier disabled");
+            return null;
+        }
+        return dir;
+    }
+
+    private static void deleteFile(File file) {
+        if (file.exists() && !file.delete()) {
+            log.warn("Could not delete cached scan " + file.getName());
+        }
+    }
+}
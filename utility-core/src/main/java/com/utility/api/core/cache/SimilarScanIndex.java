@@ -0,0 +1,282 @@
+package com.utility.api.core.cache;
+
+import com.utility.api.core.ocr.utils.PerceptualHash;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import org.apache.commons.lang3.BooleanUtils;
+import org.apache.commons.lang3.ObjectUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Index of the perceptual hashes of recognized images, so a photo of a receipt already scanned with a different
+ * framing can reuse its cached lines. Each entry maps a {@link PerceptualHash} to the content digest of the image,
+ * whose lines are then looked up in the {@link ScanResultCache}.
+ *
+ * Entries live in a ring buffer of fixed capacity, the oldest ones being replaced first, and are searched with a
+ * multi-index Hamming search: the 64 bit hash is split into four 16 bit chunks, each with a table of the entries by
+ * the value of that chunk. Two hashes within the threshold have at least one chunk within threshold / 4 bits of each
+ * other, so only the buckets of those chunk values are probed and the search doesn't grow with the number of entries
+ * but with their density per bucket. Entries of different contexts (locale, profile and parser rules) never match, nor
+ * do images whose aspect ratios differ by more than the tolerance, a cheap check against hash collisions of receipts
+ * with a different shape
+ *
+ * The index is disabled along with the scan cache, whose lines it points to
+ */
+@Component
+public class SimilarScanIndex {
+
+    private static final int DEFAULT_CAPACITY = 100000;
+    private static final int DIGEST_LENGTH = 32;
+    private static final int CHUNKS = 4;
+    private static final int CHUNK_BITS = 16;
+    private static final int BUCKETS = 1 << CHUNK_BITS;
+    private static final int MAX_THRESHOLD = 15;
+    private static final float DEFAULT_ASPECT_TOLERANCE = 0.1f;
+    private static final int NONE = -1;
+    private static final String REQUESTS_COUNTER = "scan.cache.similar.requests";
+
+    private final boolean enabled;
+    private final int threshold;
+    private final float aspectTolerance;
+    private final int capacity;
+    private final int[] probes;
+    private final Map<String, Integer> contexts = new ConcurrentHashMap<>();
+    private final AtomicInteger contextCount = new AtomicInteger();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private long[] hashes;
+    private float[] aspects;
+    private int[] contextIds;
+    private byte[] digests;
+    // Bucket chains of every chunk, slots are linked both ways so replaced entries are unlinked in constant time
+    private int[] heads;
+    private int[] next;
+    private int[] previous;
+    private int size;
+    private int cursor;
+
+    private final Counter hits = Metrics.counter(REQUESTS_COUNTER, "result", "hit");
+    private final Counter misses = Metrics.counter(REQUESTS_COUNTER, "result", "miss");
+
+    @Autowired
+    public SimilarScanIndex(ScanCacheProperties properties) {
+        Integer configured = properties.getSimilarThreshold();
+        this.enabled = BooleanUtils.isTrue(properties.getEnabled()) && configured != null && configured >= 0;
+        this.threshold = enabled ? configured : 0;
+        this.aspectTolerance = ObjectUtils.defaultIfNull(properties.getSimilarAspectTolerance(),
+                DEFAULT_ASPECT_TOLERANCE);
+        this.capacity = ObjectUtils.defaultIfNull(properties.getSimilarCapacity(), DEFAULT_CAPACITY);
+        if (threshold > MAX_THRESHOLD) {
+            throw new IllegalArgumentException("Similar scan threshold cannot be greater than " + MAX_THRESHOLD);
+        }
+        if (aspectTolerance < 0 || aspectTolerance >= 1) {
+            throw new IllegalArgumentException("Similar scan aspect tolerance must be between 0 and 1");
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Similar scan capacity must be positive");
+        }
+        this.probes = getProbes(threshold / CHUNKS);
+        if (enabled) {
+            this.hashes = new long[capacity];
+            this.aspects = new float[capacity];
+            this.contextIds = new int[capacity];
+            this.digests = new byte[capacity * DIGEST_LENGTH];
+            this.heads = new int[CHUNKS * BUCKETS];
+            this.next = new int[CHUNKS * capacity];
+            this.previous = new int[CHUNKS * capacity];
+            Arrays.fill(heads, NONE);
+            Metrics.gauge("scan.cache.similar.size", this, index -> index.size);
+        }
+    }
+
+    /**
+     * @return False if near duplicates are not looked for, either because the scan cache or the index is disabled, in
+     *         which case hashes don't need to be computed
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Builds the context of a scan: only images recognized and parsed the same way may share their lines
+     *
+     * @param locale    Locale the image is recognized with
+     * @param profile   Name of the engine profile the image is recognized with
+     * @param rules     Fingerprint of the rules the lines are parsed with
+     */
+    public String getContext(String locale, String profile, String rules) {
+        return locale + '-' + profile + '-' + rules;
+    }
+
+    /**
+     * @return Width of an image divided by its height
+     */
+    public static float getAspectRatio(int width, int height) {
+        return (float) width / height;
+    }
+
+    /**
+     * Looks for the closest image within the threshold, the most recent one on ties. Images whose aspect ratio differs
+     * from the one of the image by more than the tolerance are skipped
+     *
+     * @param hash      Perceptual hash of the image
+     * @param aspect    Aspect ratio of the image, see {@link #getAspectRatio(int, int)}
+     * @param context   Context obtained from {@link #getContext(String, String, String)}
+     *
+     * @return Digest of the closest image, or null if none is within the threshold or the index is disabled
+     */
+    public byte[] find(long hash, float aspect, String context) {
+        if (!enabled) {
+            return null;
+        }
+        Integer contextId = contexts.get(context);
+        byte[] found = contextId != null ? findClosest(hash, aspect, contextId) : null;
+        if (found != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return found;
+    }
+
+    /**
+     * Adds an image to the index, replacing the oldest entry once the index is full. Only images actually recognized
+     * should be added, so matches never drift away from the image the lines were read from
+     *
+     * @param hash      Perceptual hash of the image
+     * @param aspect    Aspect ratio of the image, see {@link #getAspectRatio(int, int)}
+     * @param context   Context obtained from {@link #getContext(String, String, String)}
+     * @param digest    SHA-256 digest of the image content
+     */
+    public void add(long hash, float aspect, String context, byte[] digest) {
+        if (!enabled) {
+            return;
+        }
+        int contextId = contexts.computeIfAbsent(context, key -> contextCount.getAndIncrement());
+        lock.writeLock().lock();
+        try {
+            int slot = cursor;
+            if (size == capacity) {
+                unlink(slot);
+            } else {
+                size++;
+            }
+            hashes[slot] = hash;
+            aspects[slot] = aspect;
+            contextIds[slot] = contextId;
+            System.arraycopy(digest, 0, digests, slot * DIGEST_LENGTH, DIGEST_LENGTH);
+            link(slot);
+            cursor = slot + 1 < capacity ? slot + 1 : 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private byte[] findClosest(long hash, float aspect, int contextId) {
+        lock.readLock().lock();
+        try {
+            int best = NONE;
+            int bestDistance = threshold + 1;
+            int bestAge = Integer.MAX_VALUE;
+            for (int chunk = 0; chunk < CHUNKS; chunk++) {
+                int value = getChunk(hash, chunk);
+                for (int probe : probes) {
+                    int slot = heads[chunk * BUCKETS + (value ^ probe)];
+                    for (; slot != NONE; slot = next[chunk * capacity + slot]) {
+                        int distance = PerceptualHash.distance(hash, hashes[slot]);
+                        if (distance > threshold || contextIds[slot] != contextId
+                                || !isSimilarAspect(aspect, aspects[slot])) {
+                            continue;
+                        }
+                        int age = getAge(slot);
+                        if (distance < bestDistance || (distance == bestDistance && age < bestAge)) {
+                            best = slot;
+                            bestDistance = distance;
+                            bestAge = age;
+                        }
+                    }
+                }
+            }
+            if (best == NONE) {
+                return null;
+            }
+            int offset = best * DIGEST_LENGTH;
+            return Arrays.copyOfRange(digests, offset, offset + DIGEST_LENGTH);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return True if the two aspect ratios differ by at most the tolerance, relative to the greater one
+     */
+    private boolean isSimilarAspect(float aspect, float other) {
+        return Math.abs(aspect - other) <= aspectTolerance * Math.max(aspect, other);
+    }
+
+    /**
+     * @return Number of entries added after the one of the slot
+     */
+    private int getAge(int slot) {
+        int newest = cursor > 0 ? cursor - 1 : capacity - 1;
+        return newest >= slot ? newest - slot : newest + capacity - slot;
+    }
+
+    private void link(int slot) {
+        long hash = hashes[slot];
+        for (int chunk = 0; chunk < CHUNKS; chunk++) {
+            int head = chunk * BUCKETS + getChunk(hash, chunk);
+            int node = chunk * capacity + slot;
+            int first = heads[head];
+            next[node] = first;
+            previous[node] = NONE;
+            if (first != NONE) {
+                previous[chunk * capacity + first] = slot;
+            }
+            heads[head] = slot;
+        }
+    }
+
+    private void unlink(int slot) {
+        long hash = hashes[slot];
+        for (int chunk = 0; chunk < CHUNKS; chunk++) {
+            int node = chunk * capacity + slot;
+            int before = previous[node];
+            int after = next[node];
+            if (before != NONE) {
+                next[chunk * capacity + before] = after;
+            } else {
+                heads[chunk * BUCKETS + getChunk(hash, chunk)] = after;
+            }
+            if (after != NONE) {
+                previous[chunk * capacity + after] = before;
+            }
+        }
+    }
+
+    private static int getChunk(long hash, int chunk) {
+        return (int) (hash >>> (chunk * CHUNK_BITS)) & (BUCKETS - 1);
+    }
+
+    /**
+     * Lists the masks turning the value of a chunk into every value within the given distance, the value itself first
+     */
+    private static int[] getProbes(int radius) {
+        int count = 0;
+        int[] masks = new int[BUCKETS];
+        for (int mask = 0; mask < BUCKETS; mask++) {
+            if (Integer.bitCount(mask) <= radius) {
+                masks[count++] = mask;
+            }
+        }
+        return Arrays.copyOf(masks, count);
+    }
+}
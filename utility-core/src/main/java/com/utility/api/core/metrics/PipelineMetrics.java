@@ -0,0 +1,67 @@
+package com.utility.api.core.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Meters of the scan pipeline. Every stage gets a latency histogram and an error counter, stages producing images also
+ * record the image dimensions
+ */
+public class PipelineMetrics {
+
+    public static final String STAGE_DURATION = "scan.stage.duration";
+    public static final String STAGE_ERRORS = "scan.stage.errors";
+    public static final String IMAGE_WIDTH = "scan.stage.image.width";
+    public static final String IMAGE_HEIGHT = "scan.stage.image.height";
+    public static final String IMAGE_BYTES = "scan.image.bytes";
+
+    private static final String STAGE_TAG = "stage";
+    private static final String DIRECTION_TAG = "direction";
+
+    /**
+     * Starts timing a stage, to be finished with {@link #stop(Timer.Sample, String)}
+     */
+    public static Timer.Sample start() {
+        return Timer.start(Metrics.globalRegistry);
+    }
+
+    public static void stop(Timer.Sample sample, String stage) {
+        sample.stop(Timer.builder(STAGE_DURATION)
+                .tag(STAGE_TAG, stage)
+                .publishPercentileHistogram()
+                .register(Metrics.globalRegistry));
+    }
+
+    public static void error(String stage, Throwable e) {
+        Metrics.counter(STAGE_ERRORS, STAGE_TAG, stage, "exception", e.getClass().getSimpleName()).increment();
+    }
+
+    /**
+     * Records the dimensions of an image produced by a stage
+     */
+    public static void image(String stage, BufferedImage image) {
+        summary(IMAGE_WIDTH, "pixels", STAGE_TAG, stage).record(image.getWidth());
+        summary(IMAGE_HEIGHT, "pixels", STAGE_TAG, stage).record(image.getHeight());
+    }
+
+    /**
+     * Records the bytes read from an upload (in) or handed to the OCR engine (out)
+     *
+     * @param direction     in or out
+     * @param bytes         Number of bytes
+     */
+    public static void bytes(String direction, long bytes) {
+        summary(IMAGE_BYTES, "bytes", DIRECTION_TAG, direction).record(bytes);
+    }
+
+    private static DistributionSummary summary(String name, String unit, String tag, String value) {
+        return DistributionSummary.builder(name)
+                .baseUnit(unit)
+                .tag(tag, value)
+                .publishPercentileHistogram()
+                .register(Metrics.globalRegistry);
+    }
+}
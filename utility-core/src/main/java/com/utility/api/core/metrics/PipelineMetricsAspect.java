@@ -0,0 +1,35 @@
+package com.utility.api.core.metrics;
+
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Times the methods annotated with {@link PipelineStage}, counting their errors and the dimensions of the images they
+ * return
+ */
+@Aspect
+@Component
+public class PipelineMetricsAspect {
+
+    @Around("@annotation(stage)")
+    public Object measure(ProceedingJoinPoint joinPoint, PipelineStage stage) throws Throwable {
+        Timer.Sample sample = PipelineMetrics.start();
+        try {
+            Object result = joinPoint.proceed();
+            if (result instanceof BufferedImage) {
+                PipelineMetrics.image(stage.value(), (BufferedImage) result);
+            }
+            return result;
+        } catch (Throwable e) {
+            PipelineMetrics.error(stage.value(), e);
+            throw e;
+        } finally {
+            PipelineMetrics.stop(sample, stage.value());
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.utility.api.core.metrics;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a public bean method as a stage of the scan pipeline. Calls are timed and their errors counted by
+ * {@link PipelineMetricsAspect}. Calls made from within the same bean are not intercepted, use {@link PipelineMetrics}
+ * for those
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface PipelineStage {
+
+    /**
+     * @return Name of the stage, used as the stage tag of the metrics
+     */
+    String value();
+}
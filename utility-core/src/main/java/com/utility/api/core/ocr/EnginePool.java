@@ -0,0 +1,299 @@
+package com.utility.api.core.ocr;
+
+import com.utility.api.core.ocr.exception.OcrException;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.log4j.Log4j;
+import org.apache.commons.lang3.BooleanUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.PointerPointer;
+import org.bytedeco.javacpp.tesseract.TessBaseAPI;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.bytedeco.javacpp.tesseract.OEM_DEFAULT;
+
+/**
+ * Bounded pool of initialized Tesseract engines. A {@link TessBaseAPI} is not thread-safe, so every engine is confined
+ * to the thread that borrowed it until it is released back to the pool.
+ *
+ * All engines are initialized when the pool is created so the first requests don't pay the initialization cost. The
+ * time spent waiting for an engine is published as a metric tagged by locale and profile, pool gauges are registered
+ * by {@link OcrEngine} as pools come and go.
+ *
+ * An engine that cannot be replaced leaves its slot vacant, and the slot is initialized again by a later borrow once
+ * the retry interval has elapsed, so a transient failure doesn't shrink the pool for good
+ */
+@Log4j
+public class EnginePool {
+
+    private static final String DICTIONARY_OFF_CONFIG = "nodict";
+    private static final String WHITELIST_VARIABLE = "tessedit_char_whitelist";
+    private static final long VACANCY_RETRY_INTERVAL = TimeUnit.SECONDS.toMillis(30);
+
+    private final String configPath;
+    private final String locale;
+    private final String profileName;
+    private final EngineProfile profile;
+    private final long borrowTimeout;
+    private final BlockingQueue<TessBaseAPI> idle;
+    // Also guards the pool state below, so an engine is never given back to a pool being closed
+    private final List<TessBaseAPI> engines;
+    private final Timer waitTimer;
+
+    private volatile boolean closed;
+    private int vacancies;
+    private long nextVacancyRetry;
+
+    /**
+     * Creates and warms up a pool of engines
+     *
+     * @param configPath        Path holding the tessdata folder
+     * @param locale            Trained data to be loaded by every engine
+     * @param profileName       Name of the profile, used to tag the metrics
+     * @param profile           Settings every engine is initialized with
+     * @param size              Number of engines in the pool
+     * @param borrowTimeout     Maximum time in milliseconds to wait for an idle engine
+     *
+     * @throws OcrException if any of the engines cannot be initialized
+     */
+    public EnginePool(String configPath, String locale, String profileName, EngineProfile profile, int size,
+                      long borrowTimeout) throws OcrException {
+        if (size < 1) {
+            throw new IllegalArgumentException("Engine pool size must be greater than zero");
+        }
+        this.configPath = configPath;
+        this.locale = locale;
+        this.profileName = profileName;
+        this.profile = profile;
+        this.borrowTimeout = borrowTimeout;
+        this.idle = new ArrayBlockingQueue<>(size);
+        this.engines = new ArrayList<>(size);
+        this.waitTimer = Timer.builder("ocr.engine.pool.wait")
+                .tags("locale", locale, "profile", profileName)
+                .publishPercentileHistogram()
+                .register(Metrics.globalRegistry);
+
+        for (int i = 0; i < size; i++) {
+            TessBaseAPI engine;
+            try {
+                engine = createEngine();
+            } catch (OcrException e) {
+                close();
+                throw e;
+            }
+            engines.add(engine);
+            idle.add(engine);
+        }
+        log.info("Initialized " + size + " OCR engines for locale " + locale + " and profile " + profileName);
+    }
+
+    /**
+     * Takes an idle engine from the pool, waiting up to the configured borrow timeout if none is available.
+     * Engines must always be given back using {@link #release(TessBaseAPI, boolean)}
+     *
+     * @return An engine for the exclusive use of the calling thread
+     *
+     * @throws OcrException if no engine becomes available in time or the pool has been closed
+     */
+    public TessBaseAPI borrow() throws OcrException {
+        if (closed) {
+            throw new OcrException("Engine pool is closed");
+        }
+        fillVacancy();
+        TessBaseAPI engine;
+        long start = System.nanoTime();
+        try {
+            engine = idle.poll(borrowTimeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OcrException("Interrupted while waiting for an OCR engine", e);
+        } finally {
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        if (engine == null) {
+            throw new OcrException("No OCR engine available after " + borrowTimeout + "ms");
+        }
+        return engine;
+    }
+
+    /**
+     * Gives an engine back to the pool. Engines flagged as broken, or failing the health check, are replaced by a newly
+     * initialized one
+     *
+     * @param engine    Engine previously obtained with {@link #borrow()}
+     * @param broken    True if the engine failed while processing an image
+     */
+    public void release(TessBaseAPI engine, boolean broken) {
+        if (engine == null) {
+            return;
+        }
+        if (!closed) {
+            if (broken || !isHealthy(engine)) {
+                engine = reinitialize(engine);
+                if (engine == null) {
+                    return;
+                }
+            } else {
+                engine.Clear();
+            }
+        }
+        offer(engine);
+    }
+
+    /**
+     * @return Total number of engines held by the pool
+     */
+    public int getSize() {
+        synchronized (engines) {
+            return engines.size();
+        }
+    }
+
+    /**
+     * @return Number of engines not currently in use
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Ends every idle engine. Engines in use are ended as soon as they are released
+     */
+    public void close() {
+        synchronized (engines) {
+            closed = true;
+            TessBaseAPI engine;
+            while ((engine = idle.poll()) != null) {
+                engine.End();
+            }
+        }
+    }
+
+    /**
+     * Puts an engine back among the idle ones, or ends it if the pool has been closed meanwhile. Checked under the
+     * same lock as {@link #close()}, so the engine can't be added after the idle engines have been ended
+     */
+    private void offer(TessBaseAPI engine) {
+        synchronized (engines) {
+            if (!closed) {
+                idle.offer(engine);
+                return;
+            }
+            engines.remove(engine);
+            engine.End();
+        }
+    }
+
+    /**
+     * Initializes an engine for a vacant slot, if any and the retry interval has elapsed since the last failure. The
+     * slot stays vacant if the engine still cannot be initialized
+     */
+    private void fillVacancy() {
+        synchronized (engines) {
+            if (vacancies == 0 || closed || System.currentTimeMillis() < nextVacancyRetry) {
+                return;
+            }
+            // Claimed before initializing, so concurrent borrows don't fill the same slot
+            vacancies--;
+        }
+        TessBaseAPI engine;
+        try {
+            engine = createEngine();
+        } catch (OcrException e) {
+            log.error("Could not initialize OCR engine for a vacant slot, retrying in " + VACANCY_RETRY_INTERVAL
+                    + "ms", e);
+            addVacancy();
+            return;
+        }
+        synchronized (engines) {
+            engines.add(engine);
+        }
+        log.info("Refilled vacant OCR engine slot for locale " + locale + " and profile " + profileName);
+        offer(engine);
+    }
+
+    private void addVacancy() {
+        synchronized (engines) {
+            vacancies++;
+            nextVacancyRetry = System.currentTimeMillis() + VACANCY_RETRY_INTERVAL;
+        }
+    }
+
+    /**
+     * An engine is considered healthy as long as it still reports the languages it was initialized with
+     */
+    private boolean isHealthy(TessBaseAPI engine) {
+        try {
+            BytePointer languages = engine.GetInitLanguagesAsString();
+            return languages != null && !languages.isNull();
+        } catch (Exception e) {
+            log.warn("OCR engine health check failed", e);
+            return false;
+        }
+    }
+
+    /**
+     * Ends a broken engine and replaces it with a fresh one. If the new engine cannot be initialized its slot is left
+     * vacant until {@link #fillVacancy()} succeeds
+     *
+     * @return The new engine or null if it could not be created
+     */
+    private TessBaseAPI reinitialize(TessBaseAPI broken) {
+        log.warn("Replacing broken OCR engine for locale " + locale);
+        synchronized (engines) {
+            engines.remove(broken);
+        }
+        try {
+            broken.End();
+        } catch (Exception e) {
+            log.warn("Could not end broken OCR engine", e);
+        }
+        try {
+            TessBaseAPI engine = createEngine();
+            synchronized (engines) {
+                engines.add(engine);
+            }
+            return engine;
+        } catch (OcrException e) {
+            addVacancy();
+            log.error("Could not reinitialize OCR engine, pool size reduced to " + getSize() + " until retried in "
+                    + VACANCY_RETRY_INTERVAL + "ms", e);
+            return null;
+        }
+    }
+
+    /**
+     * Initializes an engine with the settings of the profile. Config files are read on initialization, as dictionary
+     * loading cannot be changed afterwards, while the page segmentation mode and whitelist are set on the ready engine
+     */
+    private TessBaseAPI createEngine() throws OcrException {
+        List<String> configs = new ArrayList<>(profile.getConfigs());
+        if (BooleanUtils.isFalse(profile.getUseDictionary())) {
+            configs.add(DICTIONARY_OFF_CONFIG);
+        }
+        TessBaseAPI engine = new TessBaseAPI();
+        PointerPointer configNames = new PointerPointer(configs.toArray(new String[configs.size()]));
+        try {
+            // Initialize tesseract-ocr
+            if (engine.Init(configPath, locale, OEM_DEFAULT, configNames, configs.size(), null, null, false) != 0) {
+                engine.End();
+                throw new OcrException("Could not initialize OcrEngine for profile " + profileName);
+            }
+        } finally {
+            configNames.deallocate();
+        }
+        if (profile.getPageSegMode() != null) {
+            engine.SetPageSegMode(profile.getPageSegMode());
+        }
+        if (StringUtils.isNotEmpty(profile.getWhitelist())) {
+            engine.SetVariable(WHITELIST_VARIABLE, profile.getWhitelist());
+        }
+        return engine;
+    }
+}
@@ -0,0 +1,26 @@
+package com.utility.api.core.ocr;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tesseract settings shared by the engines of a pool. Every profile gets its own engines, initialized with these
+ * settings, so requests choose between speed and accuracy without reconfiguring engines
+ */
+@Data
+public class EngineProfile {
+
+    /** Page segmentation mode, see tesseract::PageSegMode. Defaults to fully automatic segmentation */
+    private Integer pageSegMode;
+    /** Only these characters are recognized, all of them when empty */
+    private String whitelist;
+    /** If false the system and frequent word dictionaries are not loaded */
+    private Boolean useDictionary;
+    /** Config files under tessdata/configs read on initialization */
+    private List<String> configs = new ArrayList<>();
+    /** Number of engines of the profile. Defaults to ocr.engine.poolSize */
+    private Integer poolSize;
+
+}
@@ -0,0 +1,82 @@
+package com.utility.api.core.ocr;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Guesses the locale of a receipt from words that only appear on receipts of that locale, such as "IVA" or "EFECTIVO"
+ * for Spanish and "TAX" or "CASH" for English. Counting keywords on an already recognized text costs next to nothing,
+ * compared to running the recognition once per locale
+ */
+class LocaleDetector {
+
+    private final Map<String, Set<String>> keywords = new HashMap<>();
+
+    /**
+     * @param keywords  Keywords by locale, matched as whole words ignoring case
+     */
+    LocaleDetector(Map<String, List<String>> keywords) {
+        for (Map.Entry<String, List<String>> entry : keywords.entrySet()) {
+            Set<String> words = new HashSet<>();
+            for (String word : entry.getValue()) {
+                words.add(word.trim().toUpperCase(Locale.ROOT));
+            }
+            this.keywords.put(entry.getKey(), words);
+        }
+    }
+
+    /**
+     * @return Locales keywords have been configured for
+     */
+    Set<String> getLocales() {
+        return keywords.keySet();
+    }
+
+    /**
+     * @return True if keywords have been configured for any locale
+     */
+    boolean isEnabled() {
+        return !keywords.isEmpty();
+    }
+
+    /**
+     * Finds the locale with the most keywords in a text. The locale the text was recognized with wins ties, as words
+     * of other locales are likely misread when the trained data doesn't match
+     *
+     * @param text      Recognized text
+     * @param current   Locale the text was recognized with
+     *
+     * @return The detected locale, the current one if no other locale has more keywords
+     */
+    String detect(String text, String current) {
+        Map<String, Integer> scores = new HashMap<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean letter = i < text.length() && Character.isLetter(text.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                String word = text.substring(start, i).toUpperCase(Locale.ROOT);
+                for (Map.Entry<String, Set<String>> entry : keywords.entrySet()) {
+                    if (entry.getValue().contains(word)) {
+                        scores.merge(entry.getKey(), 1, Integer::sum);
+                    }
+                }
+                start = -1;
+            }
+        }
+        String detected = current;
+        int best = scores.getOrDefault(current, 0);
+        for (Map.Entry<String, Integer> score : scores.entrySet()) {
+            if (score.getValue() > best) {
+                detected = score.getKey();
+                best = score.getValue();
+            }
+        }
+        return detected;
+    }
+}
@@ -0,0 +1,89 @@
+package com.utility.api.core.ocr;
+
+import java.util.Map;
+
+/**
+ * Engine pools of every profile for a single locale. Requests acquire the pools before borrowing engines and release
+ * them afterwards, so pools are never closed while a request may still borrow from them
+ */
+class LocaleEngines {
+
+    private final String locale;
+    private final Map<String, EnginePool> pools;
+
+    private int users;
+    private long lastUsed = System.currentTimeMillis();
+    private boolean closed;
+
+    /**
+     * @param locale    Trained data loaded by the engines
+     * @param pools     Pools by profile name
+     */
+    LocaleEngines(String locale, Map<String, EnginePool> pools) {
+        this.locale = locale;
+        this.pools = pools;
+    }
+
+    String getLocale() {
+        return locale;
+    }
+
+    /**
+     * @param profile   Name of the profile
+     *
+     * @return The pool of the profile or null if not defined
+     */
+    EnginePool getPool(String profile) {
+        return pools.get(profile);
+    }
+
+    /**
+     * @return Number of engines of every profile
+     */
+    int getSize() {
+        return pools.values().stream().mapToInt(EnginePool::getSize).sum();
+    }
+
+    /**
+     * Registers a request using the pools
+     *
+     * @return False if the pools have already been closed and must be loaded again
+     */
+    synchronized boolean acquire() {
+        if (closed) {
+            return false;
+        }
+        users++;
+        lastUsed = System.currentTimeMillis();
+        return true;
+    }
+
+    /**
+     * Unregisters a request previously registered with {@link #acquire()}
+     */
+    synchronized void release() {
+        users--;
+        lastUsed = System.currentTimeMillis();
+    }
+
+    /**
+     * Closes the pools if no request is using them and they have not been used for a while
+     *
+     * @param now           Current time in milliseconds
+     * @param idleTimeout   Time in milliseconds the pools must have been unused
+     *
+     * @return True if the pools have been closed
+     */
+    synchronized boolean closeIfIdle(long now, long idleTimeout) {
+        if (users > 0 || now - lastUsed < idleTimeout) {
+            return false;
+        }
+        close();
+        return true;
+    }
+
+    synchronized void close() {
+        closed = true;
+        pools.values().forEach(EnginePool::close);
+    }
+}
@@ -1,103 +1,660 @@
 package com.utility.api.core.ocr;
 
+import com.utility.api.core.metrics.PipelineMetrics;
+import com.utility.api.core.metrics.PipelineStage;
 import com.utility.api.core.ocr.exception.OcrException;
 import com.utility.api.core.ocr.processor.ImageProcessor;
+import com.utility.api.core.ocr.processor.LayoutAnalyzer;
 import com.utility.api.core.ocr.utils.FileUtils;
+import com.utility.api.core.ocr.utils.ImageUtils;
 import com.utility.api.core.ocr.utils.SupportedMimeType;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.log4j.Log4j;
 import org.apache.commons.lang3.BooleanUtils;
+import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.bytedeco.javacpp.BytePointer;
-import org.bytedeco.javacpp.lept;
+import org.bytedeco.javacpp.tesseract.ResultIterator;
 import org.bytedeco.javacpp.tesseract.TessBaseAPI;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PreDestroy;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
 
-import static com.utility.api.core.ocr.utils.FileUtils.deleteTemporaryFile;
-import static org.bytedeco.javacpp.lept.pixDestroy;
-import static org.bytedeco.javacpp.lept.pixRead;
+import static org.bytedeco.javacpp.tesseract.RIL_TEXTLINE;
 
+/**
+ * Registry of Tesseract engines by locale and profile. Engines of the default locale are initialized on startup, those
+ * of other locales on first use and released again once the locale has been idle for a while, so native memory is only
+ * spent on the trained data actually in use. Requests may also leave the locale to be detected from the receipt
+ */
 @Log4j
 @Component
 public class OcrEngine {
 
+    /** Locale asked for by clients that want it to be detected */
+    public static final String AUTO_LOCALE = "auto";
+
     private static final String UTF_8_ENCODING = "UTF-8";
+    private static final long DEFAULT_BORROW_TIMEOUT = 30000L;
+    private static final String DEFAULT_PROFILE = "default";
+    private static final long DEFAULT_IDLE_TIMEOUT = 600L;
+    private static final long MAX_EVICTION_PERIOD = 60000L;
 
-    private final TessBaseAPI engine;
+    private final ConcurrentMap<String, LocaleEngines> engines = new ConcurrentHashMap<>();
+    private final Object loadLock = new Object();
+    private final Set<String> locales = new LinkedHashSet<>();
+    private final Map<String, EngineProfile> profiles;
+    private final String defaultProfile;
     private final ImageProcessor processor;
+    private final LayoutAnalyzer layout;
+    private final LocaleDetector detector;
     private final boolean keepFiles;
+    private final String locale;
+    private final String configPath;
+    private final int poolSize;
+    private final long borrowTimeout;
+    private final long idleTimeout;
+    private final int capacity;
+    private final ScheduledExecutorService evictor;
 
+    private volatile boolean stopped;
 
     @Autowired
-    public OcrEngine(OcrEngineProperties properties, ImageProcessor processor) throws OcrException {
+    public OcrEngine(OcrEngineProperties properties, ImageProcessor processor, LayoutAnalyzer layout)
+            throws OcrException {
         this.processor = processor;
-        this.engine = new TessBaseAPI();
+        this.layout = layout;
         this.keepFiles = BooleanUtils.isTrue(properties.getKeepTempFiles());
-        // Initialize tesseract-ocr
-        if (engine.Init(properties.getConfigPath() , properties.getTrainedLocale()) != 0) {
-            throw new OcrException("Could not initialize OcrEngine");
+        this.locale = properties.getTrainedLocale();
+        this.configPath = properties.getConfigPath();
+        this.locales.add(locale);
+        this.locales.addAll(properties.getLocales());
+
+        Map<String, EngineProfile> profiles = properties.getProfiles();
+        if (profiles.isEmpty()) {
+            profiles = Collections.singletonMap(DEFAULT_PROFILE, new EngineProfile());
+        }
+        this.profiles = profiles;
+        this.defaultProfile = ObjectUtils.defaultIfNull(properties.getDefaultProfile(),
+                profiles.keySet().iterator().next());
+        if (!profiles.containsKey(defaultProfile)) {
+            throw new OcrException("Default engine profile " + defaultProfile + " is not defined");
+        }
+        this.detector = new LocaleDetector(properties.getKeywords());
+        for (String keywordLocale : properties.getKeywords().keySet()) {
+            if (!locales.contains(keywordLocale)) {
+                throw new OcrException("Keywords given for unsupported locale " + keywordLocale);
+            }
+        }
+        this.poolSize = ObjectUtils.defaultIfNull(properties.getPoolSize(), Runtime.getRuntime().availableProcessors());
+        this.borrowTimeout = ObjectUtils.defaultIfNull(properties.getBorrowTimeout(), DEFAULT_BORROW_TIMEOUT);
+        this.idleTimeout = TimeUnit.SECONDS.toMillis(
+                ObjectUtils.defaultIfNull(properties.getIdleTimeout(), DEFAULT_IDLE_TIMEOUT));
+        this.capacity = load(locale).getSize();
+        Metrics.gauge("ocr.engine.locales.loaded", this, engine -> engine.engines.size());
+
+        if (idleTimeout > 0 && locales.size() > 1) {
+            long period = Math.min(idleTimeout, MAX_EVICTION_PERIOD);
+            this.evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "ocr-engine-evictor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            evictor.scheduleAtFixedRate(this::evictIdleLocales, period, period, TimeUnit.MILLISECONDS);
+        } else {
+            this.evictor = null;
         }
     }
 
     @PreDestroy
     public void stopEngine() {
-        engine.End();
+        stopped = true;
+        if (evictor != null) {
+            evictor.shutdownNow();
+        }
+        synchronized (loadLock) {
+            engines.values().forEach(LocaleEngines::close);
+            engines.clear();
+        }
+    }
+
+    /**
+     * @return Number of images that can be recognized concurrently by the engines of a locale, adding up the engines of
+     *         every profile
+     */
+    public int getCapacity() {
+        return capacity;
     }
 
     /**
-     * Reads the text from an image. Supported formats are PNG, JPEG, TIFF AND BITMAP
+     * @param profile   Name of an engine profile, null for the default one
      *
-     * @param image     Image content
+     * @return Number of engines of the profile for each locale, so the number of images of that profile that can be
+     *         recognized concurrently in a locale
+     *
+     * @throws IllegalArgumentException if there is no profile with the given name
+     */
+    public int getPoolSize(String profile) {
+        return ObjectUtils.defaultIfNull(profiles.get(getProfile(profile)).getPoolSize(), poolSize);
+    }
+
+    /**
+     * @return Names of the engine profiles
+     */
+    public Set<String> getProfiles() {
+        return Collections.unmodifiableSet(profiles.keySet());
+    }
+
+    /**
+     * @return Locales requests may ask for, the default one first
+     */
+    public Set<String> getLocales() {
+        return Collections.unmodifiableSet(locales);
+    }
+
+    /**
+     * @return Locales a receipt may be detected as when clients ask for {@link #AUTO_LOCALE}, the default one first
+     */
+    public Set<String> getDetectableLocales() {
+        Set<String> detectable = new LinkedHashSet<>();
+        detectable.add(locale);
+        detectable.addAll(detector.getLocales());
+        return Collections.unmodifiableSet(detectable);
+    }
+
+    /**
+     * Resolves the profile to be used by a request
+     *
+     * @param profile   Name of the profile asked for, or null for the default one
+     *
+     * @return Name of an existing profile
+     *
+     * @throws IllegalArgumentException if no profile has the given name
+     */
+    public String getProfile(String profile) {
+        if (profile == null) {
+            return defaultProfile;
+        }
+        if (!profiles.containsKey(profile)) {
+            throw new IllegalArgumentException("Unknown engine profile " + profile);
+        }
+        return profile;
+    }
+
+    /**
+     * @return Trained data used by requests not asking for a locale
+     */
+    public String getLocale() {
+        return locale;
+    }
+
+    /**
+     * Resolves the locale to be used by a request
+     *
+     * @param requested     Locale asked for, {@link #AUTO_LOCALE} to detect it or null for the default one
+     *
+     * @return A supported locale or {@link #AUTO_LOCALE}
+     *
+     * @throws IllegalArgumentException if the locale is not supported or detection has not been configured
+     */
+    public String getLocale(String requested) {
+        if (requested == null) {
+            return locale;
+        }
+        if (AUTO_LOCALE.equals(requested)) {
+            if (!detector.isEnabled()) {
+                throw new IllegalArgumentException("Locale detection is not configured");
+            }
+            return requested;
+        }
+        if (!locales.contains(requested)) {
+            throw new IllegalArgumentException("Unsupported locale " + requested);
+        }
+        return requested;
+    }
+
+    /**
+     * Detects the media type of the content. Supported formats are PNG, JPEG and BITMAP images and TIFF and PDF
+     * documents
+     *
+     * @param input     Content, must support mark/reset so the media type can be peeked
+     *
+     * @return The media type of the content
+     *
+     * @throws OcrException if an unsupported media type is detected
+     */
+    public SupportedMimeType getMimeType(InputStream input) throws OcrException {
+        SupportedMimeType mime = processor.getMimeType(input);
+        if (mime == null) {
+            throw new OcrException("Unsupported media type");
+        }
+        return mime;
+    }
+
+    /**
+     * Decodes a single image from a stream after checking its media type. Documents only give their first page, read
+     * them with a {@link com.utility.api.core.ocr.document.DocumentReader} instead
+     *
+     * @param input     Image content, must support mark/reset so the media type can be peeked
+     *
+     * @return The decoded image
+     *
+     * @throws OcrException if an unsupported media type is detected
+     * @throws IOException if the image cannot be read or decoded
+     */
+    public BufferedImage decode(InputStream input) throws OcrException, IOException {
+        getMimeType(input);
+        return processor.decode(input);
+    }
+
+    /**
+     * Computes the perceptual hash of a decoded image, see {@link ImageProcessor#getPerceptualHash(BufferedImage)}
+     *
+     * @param image     Decoded image
+     *
+     * @return 64 bit hash, a few bits apart for photos of the same receipt
+     */
+    public long getPerceptualHash(BufferedImage image) {
+        return processor.getPerceptualHash(image);
+    }
+
+    /**
+     * Reads the text from a decoded image using the default locale and profile, see
+     * {@link #readImage(BufferedImage, String, String)}
+     *
+     * @param image     Image obtained from {@link #decode(InputStream)}
      *
      * @return Recognized text from the image in UTF-8 encoding
      *
      * @throws OcrException when the image cannot be processed
      */
-    public String readImage(byte[] image) throws OcrException {
-        try {
-            //Create temporary file
-            File file = FileUtils.createTemporaryFile(getProcessedImage(image));
+    @PipelineStage("ocr")
+    public String readImage(BufferedImage image) throws OcrException {
+        return readImage(image, null, null);
+    }
 
-            // Open input image with leptonica library
-            lept.PIX pix = pixRead(file.getAbsolutePath());
-            engine.SetImage(pix);
+    /**
+     * Reads the text from a decoded image. The image is optimized using {@link ImageProcessor#processAndScale(BufferedImage)}
+     * before the recognition, and only the regions found by {@link LayoutAnalyzer#findTextRegions(BufferedImage)} are
+     * recognized.
+     *
+     * When the locale is to be detected the image is recognized with the default locale first. Only if the keywords
+     * found point to another locale is it recognized again, reusing the processed image
+     *
+     * @param image     Image obtained from {@link #decode(InputStream)}
+     * @param locale    Locale to recognize the image with, {@link #AUTO_LOCALE} to detect it or null for the default one
+     * @param profile   Engine profile to recognize the image with, null for the default one
+     *
+     * @return Recognized text from the image in UTF-8 encoding
+     *
+     * @throws OcrException when the image cannot be processed
+     * @throws IllegalArgumentException if the locale or the profile are not supported
+     */
+    @PipelineStage("ocr")
+    public String readImage(BufferedImage image, String locale, String profile) throws OcrException {
+        return readImage(image, locale, profile, recognized -> { });
+    }
 
-            // Get OCR result
-            String result = getResult(engine.GetUTF8Text());
+    /**
+     * Reads the text from a decoded image as {@link #readImage(BufferedImage, String, String)} does, telling which
+     * locale it has been recognized with
+     *
+     * @param image             Image obtained from {@link #decode(InputStream)}
+     * @param locale            Locale to recognize the image with, {@link #AUTO_LOCALE} to detect it or null for the
+     *                          default one
+     * @param profile           Engine profile to recognize the image with, null for the default one
+     * @param localeConsumer    Receives the locale the text has been recognized with, the detected one when asked to
+     *                          detect it, before the text is returned
+     *
+     * @return Recognized text from the image in UTF-8 encoding
+     *
+     * @throws OcrException when the image cannot be processed
+     * @throws IllegalArgumentException if the locale or the profile are not supported
+     */
+    @PipelineStage("ocr")
+    public String readImage(BufferedImage image, String locale, String profile, Consumer<String> localeConsumer)
+            throws OcrException {
+        String requested = getLocale(locale);
+        String profileName = getProfile(profile);
+        String recognized = requested;
+        String text;
+        try {
+            BufferedImage processed = prepare(image);
+            List<Rectangle> regions = layout.findTextRegions(processed);
+            if (!AUTO_LOCALE.equals(requested)) {
+                text = recognize(requested, profileName, processed, regions);
+            } else {
+                text = recognize(this.locale, profileName, processed, regions);
+                recognized = detector.detect(text, this.locale);
+                Metrics.counter("ocr.locale.detected", "locale", recognized).increment();
+                if (!recognized.equals(this.locale)) {
+                    text = recognize(recognized, profileName, processed, regions);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            throw new OcrException("Could not process image for text recognition", e);
+        }
+        localeConsumer.accept(recognized);
+        return text;
+    }
 
-            if (!keepFiles) {
-                deleteTemporaryFile(file);
+    /**
+     * Reads the text from a decoded image line by line. Regions are recognized one at a time and every text line is
+     * handed to the consumer as soon as its region has been recognized, so the first lines are available long before
+     * the whole image has been read. Lines are given without the line separator, empty lines are skipped.
+     *
+     * The locale must be known before the recognition starts, so when it is to be detected the whole text is read
+     * first as done by {@link #readImage(BufferedImage, String, String)}
+     *
+     * @param image     Image obtained from {@link #decode(InputStream)}
+     * @param locale    Locale to recognize the image with, {@link #AUTO_LOCALE} to detect it or null for the default one
+     * @param profile   Engine profile to recognize the image with, null for the default one
+     * @param consumer  Receives every line in reading order. Exceptions thrown by it are propagated as they are
+     *
+     * @throws OcrException when the image cannot be processed
+     * @throws IllegalArgumentException if the locale or the profile are not supported
+     */
+    @PipelineStage("ocr")
+    public void readLines(BufferedImage image, String locale, String profile, Consumer<String> consumer)
+            throws OcrException {
+        readLines(image, locale, profile, recognized -> { }, consumer);
+    }
+
+    /**
+     * Reads the text from a decoded image line by line as {@link #readLines(BufferedImage, String, String, Consumer)}
+     * does, telling which locale the lines are recognized with before giving any of them
+     *
+     * @param image             Image obtained from {@link #decode(InputStream)}
+     * @param locale            Locale to recognize the image with, {@link #AUTO_LOCALE} to detect it or null for the
+     *                          default one
+     * @param profile           Engine profile to recognize the image with, null for the default one
+     * @param localeConsumer    Receives the locale the lines are recognized with, the detected one when asked to detect
+     *                          it, before the first line
+     * @param consumer          Receives every line in reading order. Exceptions thrown by it are propagated as they are
+     *
+     * @throws OcrException when the image cannot be processed
+     * @throws IllegalArgumentException if the locale or the profile are not supported
+     */
+    @PipelineStage("ocr")
+    public void readLines(BufferedImage image, String locale, String profile, Consumer<String> localeConsumer,
+                          Consumer<String> consumer) throws OcrException {
+        String requested = getLocale(locale);
+        String profileName = getProfile(profile);
+        if (AUTO_LOCALE.equals(requested)) {
+            String text = readImage(image, requested, profileName, localeConsumer);
+            int start = 0;
+            while (start < text.length()) {
+                int end = text.indexOf('\n', start);
+                if (end < 0) {
+                    end = text.length();
+                }
+                if (end > start) {
+                    consumer.accept(text.substring(start, end));
+                }
+                start = end + 1;
             }
-            pixDestroy(pix);
+            return;
+        }
+        BufferedImage processed;
+        List<Rectangle> regions;
+        try {
+            processed = prepare(image);
+            regions = layout.findTextRegions(processed);
+        } catch (IOException | RuntimeException e) {
+            throw new OcrException("Could not process image for text recognition", e);
+        }
+        localeConsumer.accept(requested);
+        LocaleEngines localeEngines = acquire(requested);
+        try {
+            recognizeLines(localeEngines.getPool(profileName), processed, regions, consumer);
+        } finally {
+            localeEngines.release();
+        }
+    }
+
+    /**
+     * Optimizes an image for the recognition, see {@link ImageProcessor#processAndScale(BufferedImage)}
+     *
+     * @return 8 bit grayscale image
+     */
+    private BufferedImage prepare(BufferedImage image) throws IOException {
+        BufferedImage processed = ImageUtils.toGrayscale(processor.processAndScale(image));
+
+        if (keepFiles) {
+            Timer.Sample sample = PipelineMetrics.start();
+            File file = FileUtils.createTemporaryFile(processed);
+            PipelineMetrics.stop(sample, "temp_file");
+            log.debug("Processed image kept at " + file.getAbsolutePath());
+        }
+        return processed;
+    }
+
+    /**
+     * Runs the recognition with the engines of a locale, loading them if needed
+     */
+    private String recognize(String locale, String profile, BufferedImage image, List<Rectangle> regions)
+            throws OcrException {
+        LocaleEngines localeEngines = acquire(locale);
+        try {
+            return recognize(localeEngines.getPool(profile), image, regions);
+        } finally {
+            localeEngines.release();
+        }
+    }
+
+    /**
+     * Runs the recognition on an engine borrowed from the pool. The pixel buffer is handed to the engine as is, so no
+     * encoding takes place. Engines that fail during recognition are handed back as broken so the pool can replace them.
+     * The time spent waiting for an engine is measured by the pool and not included in the recognize stage
+     *
+     * @param pool      Pool of the profile to be used
+     * @param image     8 bit grayscale image to be recognized
+     * @param regions   Regions of the image to be recognized from top to bottom, the whole image if empty
+     *
+     * @return Recognized text in UTF-8 encoding
+     *
+     * @throws OcrException if no engine is available or the recognition fails
+     */
+    private String recognize(EnginePool pool, BufferedImage image, List<Rectangle> regions) throws OcrException {
+        TessBaseAPI engine = pool.borrow();
+        Timer.Sample sample = PipelineMetrics.start();
+        boolean broken = false;
+        try {
+            byte[] data = ImageUtils.getGrayscaleData(image);
+            PipelineMetrics.bytes("out", data.length);
+            engine.SetImage(data, image.getWidth(), image.getHeight(), 1, ImageUtils.getScanlineStride(image));
 
-            return result;
+            if (regions.isEmpty()) {
+                // Get OCR result
+                return getResult(engine.GetUTF8Text());
+            }
+            StringBuilder text = new StringBuilder();
+            for (Rectangle region : regions) {
+                engine.SetRectangle(region.x, region.y, region.width, region.height);
+                String result = getResult(engine.GetUTF8Text());
+                text.append(result);
+                if (!result.isEmpty() && result.charAt(result.length() - 1) != '\n') {
+                    text.append('\n');
+                }
+            }
+            return text.toString();
         } catch (Exception e) {
+            broken = true;
+            PipelineMetrics.error("recognize", e);
             throw new OcrException("Could not process image for text recognition", e);
+        } finally {
+            PipelineMetrics.stop(sample, "recognize");
+            pool.release(engine, broken);
         }
     }
 
     /**
-     * Check the media type of the file to be processed. If a PDF is found, then it's converted to a TIFF image for the
-     * engine to process
+     * Runs the recognition region by region, walking the text lines of each region with a result iterator. The engine
+     * is only flagged as broken when the engine itself fails, not when the consumer does
      *
-     * Images are scaled using {@link ImageProcessor#processAndScale(byte[])} before returned to optimize the engine recognition
+     * @param pool      Pool of the profile to be used
+     * @param image     8 bit grayscale image to be recognized
+     * @param regions   Regions of the image to be recognized from top to bottom, the whole image if empty
+     * @param consumer  Receives every line in reading order
      *
-     * @param image    The image to be processed
-     *
-     * @return An optimized version of the image to be processed by the engine
+     * @throws OcrException if no engine is available or the recognition fails
+     */
+    private void recognizeLines(EnginePool pool, BufferedImage image, List<Rectangle> regions,
+                                Consumer<String> consumer) throws OcrException {
+        TessBaseAPI engine = pool.borrow();
+        Timer.Sample sample = PipelineMetrics.start();
+        boolean broken = false;
+        boolean emitting = false;
+        try {
+            byte[] data = ImageUtils.getGrayscaleData(image);
+            PipelineMetrics.bytes("out", data.length);
+            engine.SetImage(data, image.getWidth(), image.getHeight(), 1, ImageUtils.getScanlineStride(image));
+
+            List<Rectangle> blocks = regions.isEmpty()
+                    ? Collections.singletonList(new Rectangle(0, 0, image.getWidth(), image.getHeight())) : regions;
+            for (Rectangle region : blocks) {
+                engine.SetRectangle(region.x, region.y, region.width, region.height);
+                if (engine.Recognize(null) != 0) {
+                    throw new OcrException("Could not recognize text region " + region);
+                }
+                ResultIterator iterator = engine.GetIterator();
+                if (iterator == null) {
+                    continue;
+                }
+                try {
+                    do {
+                        String line = StringUtils.stripEnd(getResult(iterator.GetUTF8Text(RIL_TEXTLINE)), "\n");
+                        if (!line.isEmpty()) {
+                            emitting = true;
+                            consumer.accept(line);
+                            emitting = false;
+                        }
+                    } while (iterator.Next(RIL_TEXTLINE));
+                } finally {
+                    iterator.deallocate();
+                }
+            }
+        } catch (Exception e) {
+            if (emitting) {
+                throw e;
+            }
+            broken = true;
+            PipelineMetrics.error("recognize", e);
+            throw new OcrException("Could not process image for text recognition", e);
+        } finally {
+            PipelineMetrics.stop(sample, "recognize");
+            pool.release(engine, broken);
+        }
+    }
+
+    /**
+     * Gets the engines of a locale for the calling request, initializing them on first use. Pools evicted between the
+     * lookup and the acquisition are loaded again
      *
-     * @throws OcrException if an unsupported media type is detected
+     * @throws OcrException if the engines cannot be initialized or the registry has been stopped
      */
-    private byte[] getProcessedImage(byte[] image) throws OcrException {
-        SupportedMimeType mime = processor.getMimeType(image);
-        if (mime == null) {
-            throw new OcrException("Unsupported media type");
+    private LocaleEngines acquire(String locale) throws OcrException {
+        while (true) {
+            LocaleEngines localeEngines = engines.get(locale);
+            if (localeEngines == null) {
+                // Loads are serialized, initializing several locales at once would only add up their memory peaks
+                synchronized (loadLock) {
+                    localeEngines = engines.get(locale);
+                    if (localeEngines == null) {
+                        localeEngines = load(locale);
+                    }
+                }
+            }
+            if (localeEngines.acquire()) {
+                return localeEngines;
+            }
+            engines.remove(locale, localeEngines);
+        }
+    }
+
+    /**
+     * Initializes the pools of every profile for a locale and registers them
+     */
+    private LocaleEngines load(String locale) throws OcrException {
+        if (stopped) {
+            throw new OcrException("OCR engine has been stopped");
+        }
+        Map<String, EnginePool> pools = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<String, EngineProfile> profile : profiles.entrySet()) {
+                String name = profile.getKey();
+                pools.put(name, new EnginePool(configPath, locale, name, profile.getValue(),
+                        ObjectUtils.defaultIfNull(profile.getValue().getPoolSize(), poolSize), borrowTimeout));
+                registerGauges(locale, name);
+            }
+        } catch (OcrException e) {
+            pools.values().forEach(EnginePool::close);
+            throw e;
+        }
+        LocaleEngines localeEngines = new LocaleEngines(locale, pools);
+        engines.put(locale, localeEngines);
+
+        return localeEngines;
+    }
+
+    /**
+     * Gauges are bound to the registry rather than to a pool, so they keep reporting once a locale is evicted and
+     * loaded again instead of holding on to the first pool. Registering the same gauge twice has no effect
+     */
+    private void registerGauges(String locale, String profile) {
+        Tags tags = Tags.of("locale", locale, "profile", profile);
+        Metrics.gauge("ocr.engine.pool.idle", tags, this,
+                engine -> engine.getPoolCount(locale, profile, EnginePool::getIdleCount));
+        Metrics.gauge("ocr.engine.pool.size", tags, this,
+                engine -> engine.getPoolCount(locale, profile, EnginePool::getSize));
+    }
+
+    /**
+     * @return A count of the pool of a locale and profile, zero if the locale is not loaded
+     */
+    private int getPoolCount(String locale, String profile, ToIntFunction<EnginePool> count) {
+        LocaleEngines localeEngines = engines.get(locale);
+        EnginePool pool = localeEngines != null ? localeEngines.getPool(profile) : null;
+        return pool != null ? count.applyAsInt(pool) : 0;
+    }
+
+    /**
+     * Releases the engines of the locales not used for the idle timeout. The default locale is always kept
+     */
+    private void evictIdleLocales() {
+        long now = System.currentTimeMillis();
+        for (LocaleEngines localeEngines : engines.values()) {
+            try {
+                if (!localeEngines.getLocale().equals(locale) && localeEngines.closeIfIdle(now, idleTimeout)) {
+                    engines.remove(localeEngines.getLocale(), localeEngines);
+                    log.info("Released OCR engines of idle locale " + localeEngines.getLocale());
+                }
+            } catch (RuntimeException e) {
+                log.error("Could not release OCR engines of locale " + localeEngines.getLocale(), e);
+            }
         }
-        return processor.processAndScale(image);
     }
 
     /**
@@ -4,13 +4,33 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 @Component
 @ConfigurationProperties(prefix="ocr.engine")
 @Data
 public class OcrEngineProperties {
 
     private String configPath;
+    /** Locale used by requests not asking for one. Its engines are loaded on startup and never evicted */
     private String trainedLocale;
+    /** Other locales requests may ask for. Their engines are loaded on first use */
+    private List<String> locales = new ArrayList<>();
+    /** Seconds after which the engines of an unused locale are released, never if zero or negative */
+    private Long idleTimeout;
+    /** Words identifying the receipts of each locale, used to detect the locale when the client asks for it */
+    private Map<String, List<String>> keywords = new LinkedHashMap<>();
     private Boolean keepTempFiles;
+    /** Number of engines to keep initialized. Defaults to the number of available processors */
+    private Integer poolSize;
+    /** Maximum time in milliseconds a request waits for an idle engine */
+    private Long borrowTimeout;
+    /** Engine profiles by name. When none is defined a single profile with the Tesseract defaults is used */
+    private Map<String, EngineProfile> profiles = new LinkedHashMap<>();
+    /** Profile used by requests not asking for one. Defaults to the first profile defined */
+    private String defaultProfile;
 
 }
@@ -0,0 +1,20 @@
+package com.utility.api.core.ocr.document;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix="ocr.document")
+@Data
+public class DocumentProperties {
+
+    /** Resolution used to rasterize PDF pages */
+    private Integer dpi;
+    /** Maximum number of pages of a document */
+    private Integer maxPages;
+    /** Maximum number of pixels of a rasterized page. PDF pages are rendered at a lower resolution to fit, bigger TIFF
+     * pages are rejected */
+    private Long maxPagePixels;
+
+}
@@ -0,0 +1,66 @@
+package com.utility.api.core.ocr.document;
+
+import com.utility.api.core.ocr.exception.OcrException;
+import com.utility.api.core.ocr.utils.SupportedMimeType;
+import org.apache.commons.lang3.ObjectUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Opens multi-page documents so their pages can be recognized one by one
+ */
+@Component
+public class DocumentReader {
+
+    private static final int DEFAULT_DPI = 300;
+    private static final int DEFAULT_MAX_PAGES = 50;
+    // A 300 DPI page of about 16 by 26 inches, 40 MB as a grayscale image
+    private static final long DEFAULT_MAX_PAGE_PIXELS = 40000000L;
+
+    private final int dpi;
+    private final int maxPages;
+    private final long maxPagePixels;
+
+    @Autowired
+    public DocumentReader(DocumentProperties properties) {
+        this.dpi = ObjectUtils.defaultIfNull(properties.getDpi(), DEFAULT_DPI);
+        this.maxPages = ObjectUtils.defaultIfNull(properties.getMaxPages(), DEFAULT_MAX_PAGES);
+        this.maxPagePixels = ObjectUtils.defaultIfNull(properties.getMaxPagePixels(), DEFAULT_MAX_PAGE_PIXELS);
+        if (maxPagePixels <= 0) {
+            throw new IllegalArgumentException("Maximum page pixels must be positive");
+        }
+    }
+
+    /**
+     * Opens a document stored in a local file. The file must not be deleted until the document is closed
+     *
+     * @param file      Document content
+     * @param mime      Type of the document, see {@link SupportedMimeType#isDocument()}
+     *
+     * @return The opened document, to be closed by the caller
+     *
+     * @throws OcrException if the type is not a document type or the document has too many pages
+     * @throws IOException if the document cannot be read
+     */
+    public ScannedDocument open(File file, SupportedMimeType mime) throws OcrException, IOException {
+        ScannedDocument document;
+        switch (mime) {
+            case PDF:
+                document = new PdfDocument(file, dpi, maxPagePixels);
+                break;
+            case TIFF:
+                document = new TiffDocument(file, maxPagePixels);
+                break;
+            default:
+                throw new OcrException("Unsupported document type " + mime.getValue());
+        }
+        if (document.getPageCount() > maxPages) {
+            document.close();
+            throw new OcrException("Document exceeds the maximum of " + maxPages + " pages");
+        }
+        return document;
+    }
+}
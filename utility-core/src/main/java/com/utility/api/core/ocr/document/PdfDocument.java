@@ -0,0 +1,63 @@
+package com.utility.api.core.ocr.document;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * PDF document rendered page by page with PDFBox. The parsed document is backed by temporary files instead of the heap.
+ * The page size is read from the document before rendering, and pages that would exceed the maximum number of pixels at
+ * the configured resolution are rendered at the highest resolution that fits, since a tiny file may declare a page of
+ * hundreds of inches
+ */
+class PdfDocument implements ScannedDocument {
+
+    private static final float POINTS_PER_INCH = 72;
+
+    private final PDDocument document;
+    private final PDFRenderer renderer;
+    private final float dpi;
+    private final long maxPixels;
+
+    PdfDocument(File file, float dpi, long maxPixels) throws IOException {
+        this.document = PDDocument.load(file, MemoryUsageSetting.setupTempFileOnly());
+        this.renderer = new PDFRenderer(document);
+        this.dpi = dpi;
+        this.maxPixels = maxPixels;
+    }
+
+    @Override
+    public int getPageCount() {
+        return document.getNumberOfPages();
+    }
+
+    @Override
+    public BufferedImage getPage(int index) throws IOException {
+        return renderer.renderImageWithDPI(index, getDpi(index), ImageType.GRAY);
+    }
+
+    /**
+     * @return The configured resolution, lowered so the rendered page holds no more than the maximum number of pixels
+     */
+    private float getDpi(int index) {
+        // The renderer draws the crop box, which defaults to the media box
+        PDRectangle box = document.getPage(index).getCropBox();
+        double points = (double) box.getWidth() * box.getHeight();
+        double scale = dpi / POINTS_PER_INCH;
+        if (points <= 0 || points * scale * scale <= maxPixels) {
+            return dpi;
+        }
+        return (float) (POINTS_PER_INCH * Math.sqrt(maxPixels / points));
+    }
+
+    @Override
+    public void close() throws IOException {
+        document.close();
+    }
+}
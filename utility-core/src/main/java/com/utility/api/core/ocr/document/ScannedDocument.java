@@ -0,0 +1,31 @@
+package com.utility.api.core.ocr.document;
+
+import com.utility.api.core.ocr.exception.OcrException;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Multi-page document whose pages are rasterized one at a time, so only the pages being processed are held in memory.
+ * Implementations are not thread-safe
+ */
+public interface ScannedDocument extends Closeable {
+
+    /**
+     * @return Number of pages of the document
+     */
+    int getPageCount();
+
+    /**
+     * Rasterizes a single page, never into more pixels than the maximum of the document
+     *
+     * @param index     Zero based page index
+     *
+     * @return The page image
+     *
+     * @throws OcrException if the page is bigger than the maximum number of pixels and cannot be scaled down
+     * @throws IOException if the page cannot be read or rendered
+     */
+    BufferedImage getPage(int index) throws OcrException, IOException;
+}
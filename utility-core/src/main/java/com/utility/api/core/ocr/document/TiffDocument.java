@@ -0,0 +1,65 @@
+package com.utility.api.core.ocr.document;
+
+import com.utility.api.core.ocr.exception.OcrException;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * TIFF document read frame by frame straight from the file. The size of a frame is read from its header before the
+ * frame is decoded, so frames bigger than the maximum number of pixels are rejected without allocating them
+ */
+class TiffDocument implements ScannedDocument {
+
+    private final ImageInputStream stream;
+    private final ImageReader reader;
+    private final int pageCount;
+    private final long maxPixels;
+
+    TiffDocument(File file, long maxPixels) throws IOException {
+        this.maxPixels = maxPixels;
+        this.stream = ImageIO.createImageInputStream(file);
+        if (stream == null) {
+            throw new IOException("Could not open TIFF document");
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+        if (!readers.hasNext()) {
+            stream.close();
+            throw new IOException("No TIFF reader available");
+        }
+        this.reader = readers.next();
+        try {
+            reader.setInput(stream, false, true);
+            this.pageCount = reader.getNumImages(true);
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    @Override
+    public BufferedImage getPage(int index) throws OcrException, IOException {
+        long pixels = (long) reader.getWidth(index) * reader.getHeight(index);
+        if (pixels > maxPixels) {
+            throw new OcrException("Page " + (index + 1) + " has " + pixels + " pixels, more than the maximum of "
+                    + maxPixels);
+        }
+        return reader.read(index);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.dispose();
+        stream.close();
+    }
+}
@@ -0,0 +1,10 @@
+package com.utility.api.core.ocr.exception;
+
+import java.io.IOException;
+
+public class UploadTooLargeException extends IOException {
+
+    public UploadTooLargeException(String message) {
+        super(message);
+    }
+}
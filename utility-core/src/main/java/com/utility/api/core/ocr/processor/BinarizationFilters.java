@@ -0,0 +1,61 @@
+package com.utility.api.core.ocr.processor;
+
+import org.apache.commons.lang3.ObjectUtils;
+
+/**
+ * Parameters of the filter chain shared by every {@link Binarizer}, resolved from {@link BinarizationProperties}
+ */
+class BinarizationFilters {
+
+    private static final int DEFAULT_BLUR_SIZE = 5;
+    private static final double DEFAULT_BLUR_SIGMA = 50;
+    private static final int DEFAULT_THRESHOLD_BLOCK_SIZE = 9;
+    private static final double DEFAULT_THRESHOLD_OFFSET = 9;
+    private static final int DEFAULT_SMOOTH_SIZE = 3;
+    private static final double DEFAULT_SMOOTH_SIGMA = 20;
+    private static final int DEFAULT_MORPH_SIZE = 3;
+    // Adaptive thresholding compares every pixel with its neighbours, OpenCV rejects a block of a single pixel
+    private static final int MIN_THRESHOLD_BLOCK_SIZE = 3;
+
+    final int blurSize;
+    final double blurSigma;
+    final int thresholdBlockSize;
+    final double thresholdOffset;
+    final int smoothSize;
+    final double smoothSigma;
+    final int morphSize;
+    // Rows next to the edge of a block that differ from the full frame: each filter spreads the border extrapolation
+    // of the previous one by its own radius
+    final int haloRows;
+
+    /**
+     * @throws IllegalArgumentException if a kernel size is not odd and positive, or the threshold block is smaller than
+     *         {@value #MIN_THRESHOLD_BLOCK_SIZE}
+     */
+    BinarizationFilters(BinarizationProperties properties) {
+        this.blurSize = getKernelSize(properties.getBlurSize(), DEFAULT_BLUR_SIZE, "blurSize");
+        this.blurSigma = ObjectUtils.defaultIfNull(properties.getBlurSigma(), DEFAULT_BLUR_SIGMA);
+        this.thresholdBlockSize = getKernelSize(properties.getThresholdBlockSize(), DEFAULT_THRESHOLD_BLOCK_SIZE,
+                "thresholdBlockSize");
+        if (thresholdBlockSize < MIN_THRESHOLD_BLOCK_SIZE) {
+            throw new IllegalArgumentException("Kernel size thresholdBlockSize must be at least "
+                    + MIN_THRESHOLD_BLOCK_SIZE + ": " + thresholdBlockSize);
+        }
+        this.thresholdOffset = ObjectUtils.defaultIfNull(properties.getThresholdOffset(), DEFAULT_THRESHOLD_OFFSET);
+        this.smoothSize = getKernelSize(properties.getSmoothSize(), DEFAULT_SMOOTH_SIZE, "smoothSize");
+        this.smoothSigma = ObjectUtils.defaultIfNull(properties.getSmoothSigma(), DEFAULT_SMOOTH_SIGMA);
+        this.morphSize = getKernelSize(properties.getMorphSize(), DEFAULT_MORPH_SIZE, "morphSize");
+        this.haloRows = blurSize / 2 + thresholdBlockSize / 2 + smoothSize / 2 + 2 * (morphSize / 2);
+    }
+
+    /**
+     * @return The size of a kernel, which must be odd
+     */
+    private static int getKernelSize(Integer size, int defaultSize, String name) {
+        int value = ObjectUtils.defaultIfNull(size, defaultSize);
+        if (value < 1 || value % 2 == 0) {
+            throw new IllegalArgumentException("Kernel size " + name + " must be odd and positive: " + value);
+        }
+        return value;
+    }
+}
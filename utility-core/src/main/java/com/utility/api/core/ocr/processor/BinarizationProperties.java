@@ -0,0 +1,36 @@
+package com.utility.api.core.ocr.processor;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix="ocr.binarization")
+@Data
+public class BinarizationProperties {
+
+    /** Implementation used to binarize images. Defaults to AUTO */
+    private BinarizerType type;
+    /** Size of the Gaussian blur applied before thresholding, odd. Defaults to 5 */
+    private Integer blurSize;
+    /** Standard deviation of that blur. Defaults to 50 */
+    private Double blurSigma;
+    /** Size of the neighbourhood averaged by the adaptive threshold, odd and at least 3. Defaults to 9 */
+    private Integer thresholdBlockSize;
+    /** Constant subtracted from the neighbourhood mean by the adaptive threshold. Defaults to 9 */
+    private Double thresholdOffset;
+    /** Size of the Gaussian blur smoothing the binary image, odd. Defaults to 3 */
+    private Integer smoothSize;
+    /** Standard deviation of that blur. Defaults to 20 */
+    private Double smoothSigma;
+    /** Size of the square structuring element used by dilation and erosion, odd. Defaults to 3 */
+    private Integer morphSize;
+    /** Bytes of pixels run through the whole filter chain at once so they stay in cache, 0 runs every filter over
+     * the whole image. Defaults to 262144 */
+    private Integer blockSize;
+    /** Threads binarizing strips of large images, 1 binarizes them whole. Defaults to the number of processors */
+    private Integer threads;
+    /** Images with fewer pixels are binarized whole */
+    private Integer tiledMinPixels;
+
+}
@@ -0,0 +1,36 @@
+package com.utility.api.core.ocr.processor;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Turns images into binary images before recognition. The implementation is picked at startup by
+ * {@link BinarizerConfiguration}, see {@link BinarizerType}
+ */
+public interface Binarizer {
+
+    /**
+     * Converts an image to grayscale, corrects its tone and runs the binarization filters over it. The original image
+     * is returned if it cannot be processed
+     *
+     * @param original  Image to be processed
+     * @param toneCurve Lookup table of 256 entries correcting the luminance of the image, or null to leave it as is
+     *
+     * @return A new TYPE_BYTE_GRAY image holding the binary image
+     *
+     * @throws IOException
+     */
+    BufferedImage getBinaryImage(BufferedImage original, byte[] toneCurve) throws IOException;
+
+    /**
+     * Same as {@link #getBinaryImage(BufferedImage, byte[])} without tone correction
+     */
+    default BufferedImage getBinaryImage(BufferedImage original) throws IOException {
+        return getBinaryImage(original, null);
+    }
+
+    /**
+     * Frees the resources held by the binarizer
+     */
+    void release();
+}
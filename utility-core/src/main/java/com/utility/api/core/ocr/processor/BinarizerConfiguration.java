@@ -0,0 +1,68 @@
+package com.utility.api.core.ocr.processor;
+
+import lombok.extern.log4j.Log4j;
+import org.apache.commons.lang3.ObjectUtils;
+import org.bytedeco.javacpp.Loader;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Picks the {@link Binarizer} at startup. OpenCV is only touched when it is going to be used, so the service starts
+ * without its native libraries, or without JavaCV on the classpath at all, when the pure Java binarizer is selected
+ */
+@Log4j
+@Configuration
+public class BinarizerConfiguration {
+
+    private static final String OPENCV_CLASS = "org.bytedeco.javacpp.opencv_imgproc";
+
+    @Bean(destroyMethod = "release")
+    public Binarizer binarizer(BinarizationProperties properties) {
+        BinarizerType type = ObjectUtils.defaultIfNull(properties.getType(), BinarizerType.AUTO);
+        long start = System.nanoTime();
+        Binarizer binarizer;
+        switch (type) {
+            case JAVA:
+                binarizer = new JavaBinarizer(properties);
+                break;
+            case OPENCV:
+                loadOpenCV();
+                binarizer = new OpenCVProcessor(properties, null);
+                break;
+            default:
+                binarizer = isOpenCVAvailable()
+                        ? new OpenCVProcessor(properties, new JavaBinarizer(properties))
+                        : new JavaBinarizer(properties);
+                break;
+        }
+        log.info(String.format("Binarizing images with %s, loaded in %d ms", binarizer.getClass().getSimpleName(),
+                (System.nanoTime() - start) / 1_000_000));
+        return binarizer;
+    }
+
+    /**
+     * @return True if the OpenCV native libraries have been loaded
+     */
+    static boolean isOpenCVAvailable() {
+        try {
+            loadOpenCV();
+            return true;
+        } catch (IllegalStateException e) {
+            log.warn("OpenCV is not available, falling back to the pure Java binarizer: " + e.getCause());
+            return false;
+        }
+    }
+
+    /**
+     * Loads the OpenCV native libraries, extracting them from the JavaCV jars the first time
+     *
+     * @throws IllegalStateException if JavaCV is not on the classpath or its libraries cannot be loaded
+     */
+    static void loadOpenCV() {
+        try {
+            Loader.load(Class.forName(OPENCV_CLASS));
+        } catch (ClassNotFoundException | LinkageError | RuntimeException e) {
+            throw new IllegalStateException("Could not load OpenCV", e);
+        }
+    }
+}
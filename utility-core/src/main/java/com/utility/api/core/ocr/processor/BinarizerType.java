@@ -0,0 +1,22 @@
+package com.utility.api.core.ocr.processor;
+
+/**
+ * Which {@link Binarizer} is used by {@link ImageProcessor}
+ */
+public enum BinarizerType {
+
+    /**
+     * OpenCV if its native libraries can be loaded, the pure Java binarizer otherwise
+     */
+    AUTO,
+
+    /**
+     * {@link OpenCVProcessor}, failing at startup if the native libraries cannot be loaded
+     */
+    OPENCV,
+
+    /**
+     * {@link JavaBinarizer}, which needs no native library and starts faster at the cost of throughput
+     */
+    JAVA
+}
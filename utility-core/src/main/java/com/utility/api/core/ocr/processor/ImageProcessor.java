@@ -1,127 +1,231 @@
 package com.utility.api.core.ocr.processor;
 
+import com.utility.api.core.metrics.PipelineMetrics;
+import com.utility.api.core.metrics.PipelineStage;
+import com.utility.api.core.ocr.utils.LuminanceHistogram;
+import com.utility.api.core.ocr.utils.PerceptualHash;
 import com.utility.api.core.ocr.utils.SupportedMimeType;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.log4j.Log4j;
+import org.apache.commons.lang3.ObjectUtils;
 import org.imgscalr.Scalr;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
-import java.awt.image.RescaleOp;
-import java.io.*;
-import java.net.URLConnection;
+import java.io.IOException;
+import java.io.InputStream;
 
 @Log4j
 @Component
 public class ImageProcessor {
 
-	private static final int SAMPLE_SIZE = 50;
     private static final int TARGET_SIZE = 2000;
     private static final int MIN_SIZE = 1000;
+    private static final int DEFAULT_TARGET_TEXT_HEIGHT = 36;
+    private static final int DEFAULT_ADAPTIVE_MIN_SIZE = 800;
+    private static final int DEFAULT_ADAPTIVE_MAX_SIZE = 3000;
+    // Resizes changing the size less than this ratio are skipped
+    private static final float RESIZE_TOLERANCE = 0.1f;
+    // Tone correction: the ink and paper levels are taken from these percentiles of the luminance histogram
+    private static final float INK_PERCENTILE = 0.02f;
+    private static final float PAPER_PERCENTILE = 0.9f;
+    // Images whose paper is at least this bright and ink at least this dark are not corrected
+    private static final int BRIGHT_PAPER = 200;
+    private static final int DARK_INK = 64;
+    // Level the paper is stretched to, and normalized median luminance targeted by the gamma
+    private static final int PAPER_LEVEL = 235;
+    private static final double TARGET_MEDIAN = 0.6;
+    private static final double MIN_GAMMA = 0.5;
 
-    private final OpenCVProcessor processor;
+    private final Binarizer processor;
+    private final ResizeMode resizeMode;
+    private final int targetTextHeight;
+    private final int adaptiveMinSize;
+    private final int adaptiveMaxSize;
+
+    static {
+        // Decoders keep the bytes they may need to seek back to in memory rather than in temporary files
+        ImageIO.setUseCache(false);
+    }
 
     @Autowired
-    public ImageProcessor(OpenCVProcessor processor) {
+    public ImageProcessor(Binarizer processor, ImageProperties properties) {
         this.processor = processor;
+        this.resizeMode = ObjectUtils.defaultIfNull(properties.getResizeMode(), ResizeMode.FIXED);
+        this.targetTextHeight = ObjectUtils.defaultIfNull(properties.getTargetTextHeight(), DEFAULT_TARGET_TEXT_HEIGHT);
+        this.adaptiveMinSize = ObjectUtils.defaultIfNull(properties.getMinSize(), DEFAULT_ADAPTIVE_MIN_SIZE);
+        this.adaptiveMaxSize = ObjectUtils.defaultIfNull(properties.getMaxSize(), DEFAULT_ADAPTIVE_MAX_SIZE);
     }
 
     /**
-     * Converts the image into a binary image and scales it accordingly to optimize it for OCR purposes
+     * Decodes an image straight from a stream. The stream is not closed
+     *
+     * @param input     Image content
      *
-     * @param imageContent  Image content to be processed
+     * @return  Decoded image
      *
-     * @return  Processed image content
+     * @throws IOException if the content cannot be read or decoded as an image
      */
-    public byte[] processAndScale(byte[] imageContent) {
-		try (ByteArrayInputStream bis = new ByteArrayInputStream(imageContent);
-				ByteArrayOutputStream bos = new ByteArrayOutputStream()) {
-            BufferedImage image = ImageIO.read(bis);
-
-            if (isDark(image)) {
-                RescaleOp rescale = new RescaleOp(
-                        new float[]{1.6f, 1.6f, 1.6f},
-                        new float[]{0f, 0f, 0f}, null);
-                rescale.filter(image, image);
-            }
+    @PipelineStage("decode")
+    public BufferedImage decode(InputStream input) throws IOException {
+        BufferedImage image = ImageIO.read(input);
+        if (image == null) {
+            throw new IOException("Could not decode image content");
+        }
+        return image;
+    }
+
+    /**
+     * Computes the perceptual hash of a decoded image, so photos of a receipt already recognized can be told apart
+     * before any processing takes place. See {@link PerceptualHash}
+     *
+     * @param image     Decoded image
+     *
+     * @return  64 bit difference hash of the image
+     */
+    @PipelineStage("phash")
+    public long getPerceptualHash(BufferedImage image) {
+        return PerceptualHash.of(image);
+    }
+
+    /**
+     * Converts the image into a binary image and scales it accordingly to optimize it for OCR purposes. Every stage
+     * works over the decoded pixels, no encoding takes place. The exposure is analyzed over the whole image and
+     * corrected by a tone curve applied during binarization, see {@link #getToneCurve(LuminanceHistogram)}. The
+     * analysis and resizes are timed as stages of their own, binarization is timed by the {@link Binarizer}. In
+     * {@link ResizeMode#ADAPTIVE} mode the image is resized only once, see
+     * {@link #adaptiveScale(BufferedImage, Scalr.Mode, byte[])}
+     *
+     * @param image  Decoded image to be processed
+     *
+     * @return  Processed image
+     */
+    @PipelineStage("preprocess")
+    public BufferedImage processAndScale(BufferedImage image) {
+        try {
+            Timer.Sample sample = PipelineMetrics.start();
+            byte[] toneCurve = getToneCurve(LuminanceHistogram.of(image));
+            PipelineMetrics.stop(sample, "histogram");
             int originWidth = image.getWidth();
             int originHeight = image.getHeight();
             Scalr.Mode scaleMode = getPreferredScaleMode(originHeight, originWidth);
 
-            image = getProcessedImage(Scalr.resize(image, Scalr.Method.ULTRA_QUALITY, scaleMode, MIN_SIZE));
-            image = Scalr.resize(image, Scalr.Method.QUALITY, scaleMode, TARGET_SIZE);
-            ImageIO.write(image, SupportedMimeType.PNG.name().toLowerCase(), bos);
+            if (resizeMode == ResizeMode.ADAPTIVE) {
+                BufferedImage scaled = adaptiveScale(image, scaleMode, toneCurve);
+                if (scaled != null) {
+                    return scaled;
+                }
+            }
+            sample = PipelineMetrics.start();
+            BufferedImage resized = Scalr.resize(image, Scalr.Method.ULTRA_QUALITY, scaleMode, MIN_SIZE);
+            PipelineMetrics.stop(sample, "downscale");
+
+            BufferedImage binary = getProcessedImage(resized, toneCurve);
+
+            sample = PipelineMetrics.start();
+            BufferedImage scaled = Scalr.resize(binary, Scalr.Method.QUALITY, scaleMode, TARGET_SIZE);
+            PipelineMetrics.stop(sample, "upscale");
+            binary.flush();
             image.flush();
 
-            return bos.toByteArray();
-        } catch (IOException e) {
-			log.error("Could not process image", e);
-		}
-		return imageContent;
-	}
+            return scaled;
+        } catch (IOException | RuntimeException e) {
+            PipelineMetrics.error("preprocess", e);
+            log.error("Could not process image", e);
+        }
+        return image;
+    }
 
     /**
-     * Calls {@link OpenCVProcessor#getBinaryImage(BufferedImage)} in order to obtain a binary image from the specified
-     * image
+     * Resizes the image once so its text gets the target height, then binarizes it. The resampling method is the
+     * fastest one giving good results for the scale factor: bilinear for upscaling and moderate downscaling,
+     * incremental bicubic when shrinking more than twice. Images whose size barely changes are not resized at all
      *
-     * @param image     Image to be processed
+     * @param image         Image to be processed
+     * @param scaleMode     Side the size applies to
+     * @param toneCurve     Tone correction applied during binarization, may be null
      *
-     * @return  Another instance of BufferedImage holding the processed image
+     * @return  Processed image, or null if the text height could not be estimated
      *
      * @throws IOException
      */
-	private BufferedImage getProcessedImage(BufferedImage image) throws IOException {
-        ByteArrayInputStream bis = null;
-        try (ByteArrayOutputStream bos = new ByteArrayOutputStream()) {
-            // Rewrite to process with openCV
-            ImageIO.write(image, SupportedMimeType.PNG.name().toLowerCase(), bos);
-            bis = new ByteArrayInputStream(bos.toByteArray());
-
-            return processor.getBinaryImage(ImageIO.read(bis));
-        } finally {
-            if (bis != null) {
-                bis.close();
-            }
-            image.flush();
+    private BufferedImage adaptiveScale(BufferedImage image, Scalr.Mode scaleMode, byte[] toneCurve)
+            throws IOException {
+        Timer.Sample sample = PipelineMetrics.start();
+        int textHeight = TextHeightEstimator.estimate(image);
+        PipelineMetrics.stop(sample, "estimate");
+        if (textHeight <= 0) {
+            return null;
         }
+        int size = scaleMode == Scalr.Mode.FIT_TO_WIDTH ? image.getWidth() : image.getHeight();
+        int targetSize = (int) ((long) size * targetTextHeight / textHeight);
+        targetSize = Math.max(adaptiveMinSize, Math.min(adaptiveMaxSize, targetSize));
+        float factor = (float) targetSize / size;
+
+        BufferedImage resized = image;
+        if (Math.abs(factor - 1f) >= RESIZE_TOLERANCE) {
+            sample = PipelineMetrics.start();
+            Scalr.Method method = factor < 0.5f ? Scalr.Method.QUALITY : Scalr.Method.BALANCED;
+            resized = Scalr.resize(image, method, scaleMode, targetSize);
+            PipelineMetrics.stop(sample, "resize");
+        }
+        BufferedImage binary = getProcessedImage(resized, toneCurve);
+        image.flush();
+
+        return binary;
     }
 
     /**
-     * Grabs a 50x50 sample from the image to determine if it lacks brightness by analyzing pixel luminance
+     * Calls {@link Binarizer#getBinaryImage(BufferedImage, byte[])} in order to obtain a binary image from the
+     * specified image
      *
-     * @param image     Image to be analyzed
+     * @param image     Image to be processed
+     * @param toneCurve Tone correction to be applied, may be null
+     *
+     * @return  Another instance of BufferedImage holding the processed image
      *
-     * @return  True if the image is too dark
+     * @throws IOException
      */
-    private boolean isDark(BufferedImage image) {
-        int darkCount = 0;
-
-        for (int x = 0; x < SAMPLE_SIZE; x++) {
-            for (int y = 0; y < SAMPLE_SIZE; y++) {
-                if (isDark(image.getRGB(x, y))) {
-                    darkCount ++;
-                }
-            }
+    private BufferedImage getProcessedImage(BufferedImage image, byte[] toneCurve) throws IOException {
+        try {
+            return processor.getBinaryImage(image, toneCurve);
+        } finally {
+            image.flush();
         }
-        return darkCount > SAMPLE_SIZE * SAMPLE_SIZE / 2;
     }
 
     /**
-     * Returns whether a pixel is under a luminance threshold
+     * Builds the tone curve correcting the exposure of an image. The ink level is stretched to black and the paper
+     * level to {@value #PAPER_LEVEL}, then a gamma lifts the mid tones when the median is still dark. Well exposed
+     * images are left untouched
      *
-     * @param color     pixel to be analyzed
+     * @param histogram     Luminance histogram of the whole image
+     *
+     * @return  Lookup table of 256 entries, or null if no correction is needed
      */
-    private boolean isDark(int color) {
-        // extract each color component
-        int red   = (color >>> 16) & 0xFF;
-        int green = (color >>>  8) & 0xFF;
-        int blue  = (color) & 0xFF;
-
-        // calc luminance in range 0.0 to 1.0; using SRGB luminance constants
-        float luminance = (red * 0.2126f + green * 0.7152f + blue * 0.0722f) / 255;
+    private static byte[] getToneCurve(LuminanceHistogram histogram) {
+        int ink = histogram.percentile(INK_PERCENTILE);
+        int paper = histogram.percentile(PAPER_PERCENTILE);
+        if (paper <= ink || (paper >= BRIGHT_PAPER && ink <= DARK_INK)) {
+            return null;
+        }
+        double scale = (double) PAPER_LEVEL / 255 / (paper - ink);
+        double median = normalize(histogram.percentile(0.5f), ink, scale);
+        double gamma = 1;
+        if (median > 0 && median < TARGET_MEDIAN) {
+            gamma = Math.max(MIN_GAMMA, Math.log(TARGET_MEDIAN) / Math.log(median));
+        }
+        byte[] curve = new byte[256];
+        for (int level = 0; level < curve.length; level++) {
+            curve[level] = (byte) Math.round(255 * Math.pow(normalize(level, ink, scale), gamma));
+        }
+        return curve;
+    }
 
-        return luminance <= 0.7f;
+    private static double normalize(int level, int ink, double scale) {
+        return Math.max(0, Math.min(1, (level - ink) * scale));
     }
 
     /**
@@ -141,15 +245,24 @@ public class ImageProcessor {
     }
 
     /**
-     * Analyzes the MimeType of a file by its content using {@link URLConnection#guessContentTypeFromStream(InputStream)}
+     * Analyzes the MimeType of a file by the magic number at the start of its content. Only the first bytes are peeked,
+     * the stream is reset to its initial position afterwards
      *
-     * @param content   File content
+     * @param content   File content, must support mark/reset
      *
-     * @return MimeType of the file by its content
+     * @return MimeType of the file by its content, or null if it is not supported
      */
-    public SupportedMimeType getMimeType(byte[] content) {
-		try (InputStream input = new BufferedInputStream(new ByteArrayInputStream(content))) {
-			return SupportedMimeType.fromValue(URLConnection.guessContentTypeFromStream(input));
+    public SupportedMimeType getMimeType(InputStream content) {
+		byte[] header = new byte[SupportedMimeType.HEADER_LENGTH];
+		try {
+			content.mark(header.length);
+			int length = 0;
+			int read;
+			while (length < header.length && (read = content.read(header, length, header.length - length)) != -1) {
+				length += read;
+			}
+			content.reset();
+			return SupportedMimeType.fromContent(header, length);
 		} catch (IOException e) {
 			return null;
 		}
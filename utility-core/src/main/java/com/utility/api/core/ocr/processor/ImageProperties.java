@@ -0,0 +1,20 @@
+package com.utility.api.core.ocr.processor;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix="ocr.image")
+@Data
+public class ImageProperties {
+
+    /** How images are scaled before recognition. Defaults to FIXED */
+    private ResizeMode resizeMode;
+    /** Height in pixels the lines of text are scaled to in ADAPTIVE mode */
+    private Integer targetTextHeight;
+    /** Bounds of the shorter side of the image in ADAPTIVE mode */
+    private Integer minSize;
+    private Integer maxSize;
+
+}
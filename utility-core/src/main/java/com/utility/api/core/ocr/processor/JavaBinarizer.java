@@ -0,0 +1,304 @@
+package com.utility.api.core.ocr.processor;
+
+import com.utility.api.core.metrics.PipelineMetrics;
+import com.utility.api.core.metrics.PipelineStage;
+import com.utility.api.core.ocr.utils.ImageUtils;
+import lombok.extern.log4j.Log4j;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Pure Java version of the filter chain of {@link OpenCVProcessor}, working on primitive arrays so no native library
+ * has to be loaded. Filters follow the OpenCV semantics: reflected borders for the Gaussian blurs, replicated borders
+ * for the threshold mean and borders ignored by the morphology. Blurs use 8 bit fixed point kernels, so pixels may
+ * differ by one level from OpenCV before thresholding
+ *
+ * Scratch arrays are owned by the calling thread and only grow
+ */
+@Log4j
+public class JavaBinarizer implements Binarizer {
+
+    private static final int KERNEL_BITS = 8;
+    private static final int KERNEL_ONE = 1 << KERNEL_BITS;
+    // Coefficients of the BT.601 luma in 14 bit fixed point, the same OpenCV converts colors to grayscale with
+    private static final int LUMA_BITS = 14;
+    private static final int LUMA_RED = 4899;
+    private static final int LUMA_GREEN = 9617;
+    private static final int LUMA_BLUE = 1868;
+
+    private final BinarizationFilters filters;
+    private final int[] blurKernel;
+    private final int[] smoothKernel;
+    private final ThreadLocal<Scratch> localScratch = ThreadLocal.withInitial(Scratch::new);
+
+    /**
+     * Creates a binarizer with the default filters
+     */
+    public JavaBinarizer() {
+        this(new BinarizationProperties());
+    }
+
+    public JavaBinarizer(BinarizationProperties properties) {
+        this.filters = new BinarizationFilters(properties);
+        this.blurKernel = getGaussianKernel(filters.blurSize, filters.blurSigma);
+        this.smoothKernel = getGaussianKernel(filters.smoothSize, filters.smoothSigma);
+    }
+
+    @Override
+    @PipelineStage("binarize")
+    public BufferedImage getBinaryImage(BufferedImage original, byte[] toneCurve) throws IOException {
+        try {
+            int width = original.getWidth();
+            int height = original.getHeight();
+            Scratch scratch = localScratch.get();
+            scratch.ensureCapacity(width * height);
+            byte[] gray = scratch.gray;
+            byte[] temp = scratch.temp;
+            loadGray(original, gray);
+            if (toneCurve != null) {
+                applyCurve(gray, width * height, toneCurve);
+            }
+
+            blur(gray, scratch.sums, width, height, blurKernel);
+            threshold(gray, temp, scratch.sums, width, height, filters.thresholdBlockSize, filters.thresholdOffset);
+            blur(temp, scratch.sums, width, height, smoothKernel);
+            invert(temp, width * height);
+            morph(temp, gray, scratch.morph, width, height, filters.morphSize, true);
+
+            BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+            morph(gray, ImageUtils.getGrayscaleData(result), scratch.morph, width, height, filters.morphSize, false);
+            return result;
+        } catch (RuntimeException e) {
+            PipelineMetrics.error("binarize", e);
+            log.error("An error occurred while trying to obtain a binary image", e);
+        }
+        return original;
+    }
+
+    @Override
+    @PipelineStage("binarize")
+    public BufferedImage getBinaryImage(BufferedImage original) throws IOException {
+        return getBinaryImage(original, null);
+    }
+
+    /**
+     * Holds no native resources, scratch arrays are left to the garbage collector
+     */
+    @Override
+    public void release() {
+        localScratch.remove();
+    }
+
+    /**
+     * Computes the luma of every pixel
+     */
+    private static void loadGray(BufferedImage image, byte[] gray) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if (ImageUtils.isPlainGrayscale(image)) {
+            byte[] data = ImageUtils.getGrayscaleData(image);
+            int stride = ImageUtils.getScanlineStride(image);
+            for (int y = 0; y < height; y++) {
+                System.arraycopy(data, y * stride, gray, y * width, width);
+            }
+            return;
+        }
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            int offset = y * width;
+            for (int x = 0; x < width; x++) {
+                int rgb = row[x];
+                int luma = ((rgb >> 16) & 0xFF) * LUMA_RED + ((rgb >> 8) & 0xFF) * LUMA_GREEN
+                        + (rgb & 0xFF) * LUMA_BLUE;
+                gray[offset + x] = (byte) ((luma + (1 << (LUMA_BITS - 1))) >> LUMA_BITS);
+            }
+        }
+    }
+
+    private static void applyCurve(byte[] pixels, int length, byte[] toneCurve) {
+        for (int i = 0; i < length; i++) {
+            pixels[i] = toneCurve[pixels[i] & 0xFF];
+        }
+    }
+
+    private static void invert(byte[] pixels, int length) {
+        for (int i = 0; i < length; i++) {
+            pixels[i] = (byte) ~pixels[i];
+        }
+    }
+
+    /**
+     * Separable Gaussian blur in place with reflected borders (BORDER_REFLECT_101). Rows are convolved into the sums
+     * array, scaled by the kernel, and columns back into the pixels
+     */
+    private static void blur(byte[] pixels, int[] sums, int width, int height, int[] kernel) {
+        int radius = kernel.length / 2;
+        for (int y = 0; y < height; y++) {
+            int offset = y * width;
+            for (int x = 0; x < width; x++) {
+                int sum = 0;
+                if (x >= radius && x < width - radius) {
+                    for (int k = 0; k < kernel.length; k++) {
+                        sum += kernel[k] * (pixels[offset + x - radius + k] & 0xFF);
+                    }
+                } else {
+                    for (int k = 0; k < kernel.length; k++) {
+                        sum += kernel[k] * (pixels[offset + reflect(x - radius + k, width)] & 0xFF);
+                    }
+                }
+                sums[offset + x] = sum;
+            }
+        }
+
+        int[] row = new int[width];
+        int round = 1 << (2 * KERNEL_BITS - 1);
+        for (int y = 0; y < height; y++) {
+            Arrays.fill(row, round);
+            for (int k = 0; k < kernel.length; k++) {
+                int source = reflect(y - radius + k, height) * width;
+                int weight = kernel[k];
+                for (int x = 0; x < width; x++) {
+                    row[x] += weight * sums[source + x];
+                }
+            }
+            int offset = y * width;
+            for (int x = 0; x < width; x++) {
+                pixels[offset + x] = (byte) Math.min(255, row[x] >> (2 * KERNEL_BITS));
+            }
+        }
+    }
+
+    /**
+     * Adaptive mean threshold (ADAPTIVE_THRESH_MEAN_C, THRESH_BINARY): pixels brighter than the mean of their block
+     * minus the offset turn white. The mean is taken over replicated borders (BORDER_REPLICATE) and rounded to a level
+     */
+    private static void threshold(byte[] source, byte[] target, int[] sums, int width, int height, int blockSize,
+                                  double offset) {
+        int radius = blockSize / 2;
+        int area = blockSize * blockSize;
+        int delta = (int) Math.ceil(offset);
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            int sum = 0;
+            for (int k = -radius; k <= radius; k++) {
+                sum += source[row + clamp(k, width)] & 0xFF;
+            }
+            for (int x = 0; x < width; x++) {
+                sums[row + x] = sum;
+                sum += (source[row + clamp(x + radius + 1, width)] & 0xFF)
+                        - (source[row + clamp(x - radius, width)] & 0xFF);
+            }
+        }
+
+        int[] columns = new int[width];
+        for (int k = -radius; k <= radius; k++) {
+            int row = clamp(k, height) * width;
+            for (int x = 0; x < width; x++) {
+                columns[x] += sums[row + x];
+            }
+        }
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            int next = clamp(y + radius + 1, height) * width;
+            int previous = clamp(y - radius, height) * width;
+            for (int x = 0; x < width; x++) {
+                int mean = (2 * columns[x] + area) / (2 * area);
+                target[row + x] = (source[row + x] & 0xFF) - mean > -delta ? (byte) 255 : 0;
+                columns[x] += sums[next + x] - sums[previous + x];
+            }
+        }
+    }
+
+    /**
+     * Dilation or erosion with a square structuring element, run as a horizontal and a vertical pass. Pixels out of
+     * the image are ignored
+     */
+    private static void morph(byte[] source, byte[] target, byte[] horizontal, int width, int height, int size,
+                              boolean dilate) {
+        int radius = size / 2;
+        byte[] row = new byte[width];
+        for (int y = 0; y < height; y++) {
+            int offset = y * width;
+            for (int x = 0; x < width; x++) {
+                int value = dilate ? 0 : 255;
+                for (int k = Math.max(0, x - radius); k <= Math.min(width - 1, x + radius); k++) {
+                    int pixel = source[offset + k] & 0xFF;
+                    value = dilate ? Math.max(value, pixel) : Math.min(value, pixel);
+                }
+                horizontal[offset + x] = (byte) value;
+            }
+        }
+        for (int y = 0; y < height; y++) {
+            Arrays.fill(row, (byte) (dilate ? 0 : 255));
+            for (int k = Math.max(0, y - radius); k <= Math.min(height - 1, y + radius); k++) {
+                int offset = k * width;
+                for (int x = 0; x < width; x++) {
+                    int pixel = horizontal[offset + x] & 0xFF;
+                    int value = row[x] & 0xFF;
+                    row[x] = (byte) (dilate ? Math.max(value, pixel) : Math.min(value, pixel));
+                }
+            }
+            System.arraycopy(row, 0, target, y * width, width);
+        }
+    }
+
+    /**
+     * Gaussian kernel computed like OpenCV's getGaussianKernel, in fixed point with {@value #KERNEL_BITS} bits
+     */
+    private static int[] getGaussianKernel(int size, double sigma) {
+        double sigmaX = sigma > 0 ? sigma : ((size - 1) * 0.5 - 1) * 0.3 + 0.8;
+        double[] weights = new double[size];
+        double total = 0;
+        for (int i = 0; i < size; i++) {
+            double x = i - (size - 1) * 0.5;
+            weights[i] = Math.exp(-x * x / (2 * sigmaX * sigmaX));
+            total += weights[i];
+        }
+        int[] kernel = new int[size];
+        int sum = 0;
+        for (int i = 0; i < size; i++) {
+            kernel[i] = (int) Math.round(weights[i] / total * KERNEL_ONE);
+            sum += kernel[i];
+        }
+        // Rounding errors go to the center so flat areas keep their level
+        kernel[size / 2] += KERNEL_ONE - sum;
+        return kernel;
+    }
+
+    private static int reflect(int index, int length) {
+        if (length == 1) {
+            return 0;
+        }
+        while (index < 0 || index >= length) {
+            index = index < 0 ? -index : 2 * length - 2 - index;
+        }
+        return index;
+    }
+
+    private static int clamp(int index, int length) {
+        return index < 0 ? 0 : index >= length ? length - 1 : index;
+    }
+
+    /**
+     * Arrays reused by a thread between calls
+     */
+    private static class Scratch {
+
+        private byte[] gray = new byte[0];
+        private byte[] temp = new byte[0];
+        private byte[] morph = new byte[0];
+        private int[] sums = new int[0];
+
+        void ensureCapacity(int pixels) {
+            if (gray.length < pixels) {
+                gray = new byte[pixels];
+                temp = new byte[pixels];
+                morph = new byte[pixels];
+                sums = new int[pixels];
+            }
+        }
+    }
+}
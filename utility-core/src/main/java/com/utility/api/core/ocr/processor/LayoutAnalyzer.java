@@ -0,0 +1,173 @@
+package com.utility.api.core.ocr.processor;
+
+import com.utility.api.core.metrics.PipelineStage;
+import com.utility.api.core.ocr.utils.ImageUtils;
+import org.apache.commons.lang3.BooleanUtils;
+import org.apache.commons.lang3.ObjectUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Finds the regions of a processed image holding lines of text, so logos, barcodes and blank areas are not handed to
+ * Tesseract. The analysis is a horizontal projection profile of the binary image:
+ *
+ * - Rows holding ink are grouped into bands
+ * - Bands too tall (logos, barcodes) or almost solid are skipped, and split the blocks around them
+ * - Consecutive bands close to each other are merged into blocks, cropped to the columns holding ink
+ * - Bands too thin (noise, dotted rules) never start a block on their own
+ */
+@Component
+public class LayoutAnalyzer {
+
+    private static final int DEFAULT_MIN_LINE_HEIGHT = 8;
+    private static final int DEFAULT_MAX_LINE_HEIGHT = 120;
+    private static final int DEFAULT_BLOCK_GAP = 40;
+    private static final int DEFAULT_PADDING = 6;
+    // Only one column out of this many is sampled when building the profile
+    private static final int COLUMN_STEP = 2;
+    // Rows with less ink than this ratio of their width are considered blank
+    private static final float MIN_ROW_INK = 0.005f;
+    // Bands with more ink than this ratio of their area are considered pictures
+    private static final float MAX_BAND_INK = 0.45f;
+    // When the blocks cover more than this ratio of the image the whole image is recognized instead
+    private static final float MAX_COVERAGE = 0.9f;
+
+    private final boolean enabled;
+    private final int minLineHeight;
+    private final int maxLineHeight;
+    private final int blockGap;
+    private final int padding;
+
+    @Autowired
+    public LayoutAnalyzer(LayoutProperties properties) {
+        this.enabled = BooleanUtils.isNotFalse(properties.getEnabled());
+        this.minLineHeight = ObjectUtils.defaultIfNull(properties.getMinLineHeight(), DEFAULT_MIN_LINE_HEIGHT);
+        this.maxLineHeight = ObjectUtils.defaultIfNull(properties.getMaxLineHeight(), DEFAULT_MAX_LINE_HEIGHT);
+        this.blockGap = ObjectUtils.defaultIfNull(properties.getBlockGap(), DEFAULT_BLOCK_GAP);
+        this.padding = ObjectUtils.defaultIfNull(properties.getPadding(), DEFAULT_PADDING);
+    }
+
+    /**
+     * Finds the blocks of text lines of an image
+     *
+     * @param image     8 bit grayscale image obtained from {@link ImageUtils#toGrayscale(BufferedImage)}
+     *
+     * @return Regions to be recognized from top to bottom. Empty if the whole image should be recognized, either
+     *         because no text was found or because text covers most of it
+     */
+    @PipelineStage("layout")
+    public List<Rectangle> findTextRegions(BufferedImage image) {
+        if (!enabled) {
+            return Collections.emptyList();
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        byte[] data = ImageUtils.getGrayscaleData(image);
+        int stride = ImageUtils.getScanlineStride(image);
+
+        boolean darkInk = isLightBackground(data, width, height, stride);
+        int[] rowInk = new int[height];
+        int[] rowLeft = new int[height];
+        int[] rowRight = new int[height];
+        for (int y = 0; y < height; y++) {
+            int offset = y * stride;
+            int ink = 0;
+            int left = width;
+            int right = -1;
+            for (int x = 0; x < width; x += COLUMN_STEP) {
+                if (isInk(data[offset + x], darkInk)) {
+                    ink++;
+                    if (left == width) {
+                        left = x;
+                    }
+                    right = x;
+                }
+            }
+            rowInk[y] = ink;
+            rowLeft[y] = left;
+            rowRight[y] = right;
+        }
+
+        int samples = (width + COLUMN_STEP - 1) / COLUMN_STEP;
+        int minInk = Math.max(1, (int) (samples * MIN_ROW_INK));
+        List<Rectangle> blocks = new ArrayList<>();
+        Rectangle block = null;
+        int y = 0;
+        while (y < height) {
+            if (rowInk[y] < minInk) {
+                y++;
+                continue;
+            }
+            int start = y;
+            long ink = 0;
+            int left = width;
+            int right = -1;
+            while (y < height && rowInk[y] >= minInk) {
+                ink += rowInk[y];
+                left = Math.min(left, rowLeft[y]);
+                right = Math.max(right, rowRight[y]);
+                y++;
+            }
+            int bandHeight = y - start;
+            if (bandHeight > maxLineHeight || ink > MAX_BAND_INK * samples * bandHeight) {
+                // A picture splits the blocks around it so it is never recognized as part of them
+                block = null;
+                continue;
+            }
+            Rectangle band = new Rectangle(left, start, right - left + 1, bandHeight);
+            if (block != null && start - (block.y + block.height) <= blockGap) {
+                // Thin bands next to a block are usually accents or underlines of its lines
+                block.add(band);
+            } else if (bandHeight >= minLineHeight) {
+                block = band;
+                blocks.add(block);
+            }
+        }
+        return pad(blocks, width, height);
+    }
+
+    /**
+     * Adds the padding to every block, giving up if the blocks end up covering most of the image
+     */
+    private List<Rectangle> pad(List<Rectangle> blocks, int width, int height) {
+        long covered = 0;
+        Rectangle bounds = new Rectangle(0, 0, width, height);
+        for (Rectangle block : blocks) {
+            block.grow(padding + COLUMN_STEP, padding);
+            block.setBounds(block.intersection(bounds));
+            covered += (long) block.width * block.height;
+        }
+        if (covered > MAX_COVERAGE * width * height) {
+            return Collections.emptyList();
+        }
+        return blocks;
+    }
+
+    /**
+     * The background is the most frequent color, so ink is dark when the image is mostly light
+     */
+    private static boolean isLightBackground(byte[] data, int width, int height, int stride) {
+        long light = 0;
+        long total = 0;
+        for (int y = 0; y < height; y += COLUMN_STEP * 2) {
+            int offset = y * stride;
+            for (int x = 0; x < width; x += COLUMN_STEP * 2) {
+                if ((data[offset + x] & 0xFF) >= 128) {
+                    light++;
+                }
+                total++;
+            }
+        }
+        return light * 2 >= total;
+    }
+
+    private static boolean isInk(byte value, boolean darkInk) {
+        return ((value & 0xFF) < 128) == darkInk;
+    }
+}
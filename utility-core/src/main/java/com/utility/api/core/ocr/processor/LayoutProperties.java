@@ -0,0 +1,23 @@
+package com.utility.api.core.ocr.processor;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix="ocr.layout")
+@Data
+public class LayoutProperties {
+
+    /** If false the whole image is recognized */
+    private Boolean enabled;
+    /** Bands of ink thinner than this number of pixels are treated as noise or rules */
+    private Integer minLineHeight;
+    /** Bands of ink taller than this number of pixels are treated as logos, barcodes or pictures */
+    private Integer maxLineHeight;
+    /** Lines closer than this number of pixels are recognized together as a single block */
+    private Integer blockGap;
+    /** Pixels of margin added around every block */
+    private Integer padding;
+
+}
@@ -1,28 +1,93 @@
 package com.utility.api.core.ocr.processor;
 
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.utility.api.core.metrics.PipelineMetrics;
+import com.utility.api.core.metrics.PipelineStage;
+import io.micrometer.core.instrument.Metrics;
 import lombok.extern.log4j.Log4j;
-import org.bytedeco.javacv.Java2DFrameConverter;
-import org.bytedeco.javacv.OpenCVFrameConverter;
-import org.springframework.stereotype.Component;
+import org.apache.commons.lang3.ObjectUtils;
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.IntPointer;
+import org.bytedeco.javacpp.Pointer;
 
+import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.bytedeco.javacpp.opencv_core.*;
 import static org.bytedeco.javacpp.opencv_imgproc.*;
 
+/**
+ * {@link Binarizer} running the filter chain with OpenCV. Created by {@link BinarizerConfiguration} when its native
+ * libraries can be loaded
+ */
 @Log4j
-@Component
-public class OpenCVProcessor {
+public class OpenCVProcessor implements Binarizer {
 
-    private OpenCVFrameConverter.ToIplImage iplConverter = new OpenCVFrameConverter.ToIplImage();
-    private Java2DFrameConverter frameConverter = new Java2DFrameConverter();
+    private static final String NATIVE_BYTES_GAUGE = "ocr.opencv.native.bytes";
+    // Extra room given to scratch buffers when they grow, so slightly bigger images don't trigger a new allocation
+    private static final float GROWTH_FACTOR = 1.25f;
+    private static final int TONE_LEVELS = 256;
+    private static final int DEFAULT_BLOCK_SIZE = 256 * 1024;
+    private static final int DEFAULT_TILED_MIN_PIXELS = 4_000_000;
+    private static final int MIN_STRIP_ROWS = 128;
+
+    private final AtomicLong nativeBytes = new AtomicLong();
+    // Buffers not borrowed by any binarization, the most recently returned first. Guarded by itself
+    private final Deque<ScratchBuffers> idleBuffers = new ArrayDeque<>();
+    private final BinarizationFilters filters;
+    private final int blockSize;
+    private final ExecutorService stripPool;
+    private final int maxStrips;
+    private final int tiledMinPixels;
+    private final Binarizer fallback;
+
+    private boolean released;
+
+    /**
+     * Creates a processor with the default filters binarizing every image on the calling thread
+     */
+    public OpenCVProcessor() {
+        this(singleThreaded(), null);
+    }
+
+    /**
+     * @param properties    Filters and threading of the binarization
+     * @param fallback      Binarizer used for the images OpenCV fails to process, null to return them unchanged
+     */
+    public OpenCVProcessor(BinarizationProperties properties, Binarizer fallback) {
+        this.filters = new BinarizationFilters(properties);
+        this.fallback = fallback;
+        this.blockSize = ObjectUtils.defaultIfNull(properties.getBlockSize(), DEFAULT_BLOCK_SIZE);
+        this.maxStrips = ObjectUtils.defaultIfNull(properties.getThreads(), Runtime.getRuntime().availableProcessors());
+        this.tiledMinPixels = ObjectUtils.defaultIfNull(properties.getTiledMinPixels(), DEFAULT_TILED_MIN_PIXELS);
+        this.stripPool = maxStrips > 1 ? createStripPool(maxStrips) : null;
+        Metrics.gauge(NATIVE_BYTES_GAUGE, nativeBytes);
+    }
 
     /**
      * Processes an image in order to optimize it before using an OCR scan.
      * The following steps are used :
      *
      * - Image is converted into a grayscale image
+     * - The tone curve, if any, is applied to the grayscale image
      * - Then a GaussianBlur is applied
      * - Image is turned into a binary version using an AdaptativeThreshold
      * - A lesser GaussianBlur is applied
@@ -30,37 +95,476 @@ public class OpenCVProcessor {
      * - Dilation is applied
      * - And finally Erosion
      *
+     * Native buffers are borrowed from a pool for the time of the call and reused between calls, so no native memory is
+     * allocated once the buffers have grown to the size of the processed images. The pool holds as many buffers as
+     * images and strips were ever binarized at once, which the threads calling the processor and the strip pool bound
+     *
+     * Images bigger than blockSize bytes are run through the whole chain a block of rows at a time, so every row is
+     * read from memory once instead of once per filter. Images of at least tiledMinPixels are also split into
+     * horizontal strips binarized in parallel. Every block is extended with the rows of its neighbours the filters
+     * reach, which are dropped when stitching the result, so the output is the same as binarizing the full frame
+     *
      * This process is probably going to suffer some modifications over time in order to optimize text recognition
      *
+     * Images OpenCV fails to process are handed to the fallback binarizer, if any, or returned unchanged
+     *
      * @param original  BufferedImage holding the image to be processed
+     * @param toneCurve Lookup table of 256 entries correcting the luminance of the image, or null to leave it as is
      *
      * @throws IOException
      */
-    public BufferedImage getBinaryImage(BufferedImage original) throws IOException {
+    @Override
+    @PipelineStage("binarize")
+    public BufferedImage getBinaryImage(BufferedImage original, byte[] toneCurve) throws IOException {
+        ScratchBuffers buffers = null;
         try {
-            IplImage image = iplConverter.convert(frameConverter.convert(original));
-            IplImage grayImage = IplImage.create(image.width(), image.height(), IPL_DEPTH_8U, 1);
+            buffers = borrowBuffers();
+            Mat grayImage = buffers.load(original);
+            int width = original.getWidth();
+            int height = original.getHeight();
+            int strips = getStripCount(width, height);
+            if (strips == 1 && (blockSize <= 0 || (long) width * height <= blockSize)) {
+                binarize(buffers, grayImage, toneCurve);
+                return buffers.toBufferedImage();
+            }
+
+            BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+            byte[] pixels = ((DataBufferByte) result.getRaster().getDataBuffer()).getData();
+            if (strips > 1) {
+                binarizeStrips(grayImage, toneCurve, strips, pixels);
+            } else {
+                binarizeRows(buffers, grayImage, 0, height, toneCurve, pixels);
+            }
+            return result;
+        } catch (Exception e) {
+            PipelineMetrics.error("binarize", e);
+            if (fallback != null) {
+                log.error("OpenCV failed to binarize an image, using the fallback binarizer", e);
+                return fallback.getBinaryImage(original, toneCurve);
+            }
+            log.error("An error occurred while trying to obtain a binary image", e);
+        } finally {
+            if (buffers != null) {
+                returnBuffers(buffers);
+            }
+        }
+        return original;
+    }
+
+    @Override
+    @PipelineStage("binarize")
+    public BufferedImage getBinaryImage(BufferedImage original) throws IOException {
+        return getBinaryImage(original, null);
+    }
+
+    /**
+     * @return Bytes of native memory currently held by the scratch buffers, borrowed or not
+     */
+    public long getNativeBytesInUse() {
+        return nativeBytes.get();
+    }
+
+    /**
+     * Frees the native buffers. Buffers still borrowed by binarizations in progress are freed as soon as they are
+     * returned, so no buffer is freed while in use. Images given to the processor afterwards are handed to the
+     * fallback binarizer, if any
+     */
+    @Override
+    public void release() {
+        if (stripPool != null) {
+            stripPool.shutdown();
+        }
+        synchronized (idleBuffers) {
+            released = true;
+            for (ScratchBuffers buffers : idleBuffers) {
+                buffers.release();
+            }
+            idleBuffers.clear();
+        }
+        if (fallback != null) {
+            fallback.release();
+        }
+    }
 
-            // grayscale
-            cvCvtColor(image, grayImage, CV_BGR2GRAY);
+    /**
+     * Applies every binarization step in place
+     */
+    private void binarize(ScratchBuffers buffers, Mat grayImage, byte[] toneCurve) {
+        if (toneCurve != null) {
+            LUT(grayImage, buffers.loadCurve(toneCurve), grayImage);
+        }
 
-            Mat matImage = new Mat(grayImage);
+        GaussianBlur(grayImage, grayImage, buffers.blurKernelSize, filters.blurSigma);
 
-            GaussianBlur(matImage, matImage, new Size(5, 5), 50);
+        // apply threshold
+        adaptiveThreshold(grayImage, grayImage, 255, CV_ADAPTIVE_THRESH_MEAN_C, CV_THRESH_BINARY,
+                filters.thresholdBlockSize, filters.thresholdOffset);
 
-            // apply threshold
-            adaptiveThreshold(matImage, matImage,255, CV_ADAPTIVE_THRESH_MEAN_C, CV_THRESH_BINARY, 9, 9);
+        GaussianBlur(grayImage, grayImage, buffers.smoothKernelSize, filters.smoothSigma);
 
-            GaussianBlur(matImage, matImage, new Size(3, 3), 20);
+        bitwise_not(grayImage, grayImage);
+        dilate(grayImage, grayImage, buffers.kernel);
+        erode(grayImage, grayImage, buffers.kernel);
+    }
 
-            cvNot(grayImage, grayImage);
-            cvDilate(grayImage, grayImage);
-            cvErode(grayImage, grayImage);
+    /**
+     * @return Number of strips an image is binarized in, 1 to binarize it as a whole
+     */
+    private int getStripCount(int width, int height) {
+        if (stripPool == null || (long) width * height < tiledMinPixels) {
+            return 1;
+        }
+        return Math.max(1, Math.min(maxStrips, height / MIN_STRIP_ROWS));
+    }
 
-            return frameConverter.getBufferedImage(iplConverter.convert(grayImage), 1);
-        } catch (Exception e) {
-            log.error("An error occurred while trying to obtain a binary image", e);
+    /**
+     * Binarizes the strips of an image on the strip pool, each one by a single task. Every task is waited for even if
+     * another one fails, as they all read the image held by the buffers of the calling task
+     *
+     * @param grayImage     Grayscale image held by the buffers of the calling task
+     * @param toneCurve     Tone curve or null
+     * @param count         Number of strips
+     * @param pixels        Pixels of the binary image
+     *
+     * @throws ExecutionException if any strip could not be binarized
+     */
+    private void binarizeStrips(Mat grayImage, byte[] toneCurve, int count, byte[] pixels)
+            throws ExecutionException {
+        int height = grayImage.rows();
+        List<Future<?>> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int from = (int) ((long) height * i / count);
+            int to = (int) ((long) height * (i + 1) / count);
+            tasks.add(stripPool.submit(() -> {
+                ScratchBuffers buffers = borrowBuffers();
+                try {
+                    binarizeRows(buffers, grayImage, from, to, toneCurve, pixels);
+                } finally {
+                    returnBuffers(buffers);
+                }
+            }));
+        }
+        ExecutionException failure = null;
+        for (Future<?> task : tasks) {
+            try {
+                Uninterruptibles.getUninterruptibly(task);
+            } catch (ExecutionException e) {
+                failure = ObjectUtils.defaultIfNull(failure, e);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Binarizes a range of rows a block at a time. Each block is copied along with its halo into the given block
+     * buffer, so the source image is only read, and its rows are written straight into the result
+     *
+     * @param buffers       Buffers borrowed by the current task
+     * @param grayImage     Grayscale image, possibly held by the buffers of another task
+     * @param from          First row of the range
+     * @param to            Row following the range
+     * @param toneCurve     Tone curve or null
+     * @param pixels        Pixels of the binary image
+     */
+    private void binarizeRows(ScratchBuffers buffers, Mat grayImage, int from, int to, byte[] toneCurve,
+                              byte[] pixels) {
+        int width = grayImage.cols();
+        int height = grayImage.rows();
+        int blocks = 1;
+        if (blockSize > 0) {
+            int blockRows = Math.max(blockSize / width, 4 * filters.haloRows);
+            blocks = Math.max(1, (to - from + blockRows - 1) / blockRows);
+        }
+        for (int i = 0; i < blocks; i++) {
+            int start = from + (int) ((long) (to - from) * i / blocks);
+            int end = from + (int) ((long) (to - from) * (i + 1) / blocks);
+            int haloFrom = Math.max(0, start - filters.haloRows);
+            int haloTo = Math.min(height, end + filters.haloRows);
+            Mat block = buffers.loadBlock(grayImage, haloFrom, haloTo);
+            binarize(buffers, block, toneCurve);
+            buffers.copyBlock(start - haloFrom, end - start, pixels, start);
+        }
+    }
+
+    /**
+     * Creates the pool binarizing the strips. Its threads never time out, as each of them owns native buffers that
+     * would otherwise be created again by every new thread
+     */
+    private static ExecutorService createStripPool(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "binarize-strip-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    private static BinarizationProperties singleThreaded() {
+        BinarizationProperties properties = new BinarizationProperties();
+        properties.setThreads(1);
+        return properties;
+    }
+
+    /**
+     * Takes idle buffers from the pool, or creates new ones if every buffer is in use
+     *
+     * @throws IllegalStateException if the processor has been released
+     */
+    private ScratchBuffers borrowBuffers() {
+        synchronized (idleBuffers) {
+            if (released) {
+                throw new IllegalStateException("OpenCV processor has been released");
+            }
+            ScratchBuffers buffers = idleBuffers.pollFirst();
+            return buffers != null ? buffers : new ScratchBuffers();
+        }
+    }
+
+    /**
+     * Gives buffers back to the pool, or frees them if the processor has been released meanwhile
+     */
+    private void returnBuffers(ScratchBuffers buffers) {
+        synchronized (idleBuffers) {
+            if (released) {
+                buffers.release();
+            } else {
+                idleBuffers.addFirst(buffers);
+            }
+        }
+    }
+
+    /**
+     * Native memory used by a single binarization at a time. Pixel data lives in buffers that only grow: the loaded
+     * image, in color and grayscale, and the block being binarized. Mat headers are recreated only when the dimensions
+     * change
+     */
+    private class ScratchBuffers {
+
+        private final Size blurKernelSize = new Size(filters.blurSize, filters.blurSize);
+        private final Size smoothKernelSize = new Size(filters.smoothSize, filters.smoothSize);
+        private final Size morphKernelSize = new Size(filters.morphSize, filters.morphSize);
+        private final Mat kernel = getStructuringElement(MORPH_RECT, morphKernelSize);
+        private final BytePointer curveData = new BytePointer(TONE_LEVELS);
+        private final Mat curve = new Mat(1, TONE_LEVELS, CV_8UC1, curveData);
+
+        private BytePointer colorData;
+        private BytePointer grayData;
+        private BytePointer blockData;
+        private int colorCapacity;
+        private int grayCapacity;
+        private int blockCapacity;
+        private Mat colorImage;
+        private Mat grayImage;
+        private Mat blockImage;
+        private int width;
+        private int height;
+        private int channels;
+        private int blockWidth;
+        private int blockHeight;
+
+        /**
+         * Copies the image pixels into native memory
+         *
+         * @return A grayscale Mat holding the image
+         */
+        Mat load(BufferedImage image) {
+            BufferedImage source = asSupportedType(image);
+            int imageChannels = source.getType() == BufferedImage.TYPE_BYTE_GRAY ? 1
+                    : source.getType() == BufferedImage.TYPE_3BYTE_BGR ? 3 : 4;
+            resize(source.getWidth(), source.getHeight(), imageChannels);
+
+            if (channels == 1) {
+                grayData.position(0).put(((DataBufferByte) source.getRaster().getDataBuffer()).getData());
+            } else if (channels == 3) {
+                colorData.position(0).put(((DataBufferByte) source.getRaster().getDataBuffer()).getData());
+                cvtColor(colorImage, grayImage, CV_BGR2GRAY);
+            } else {
+                // Packed 0x00RRGGBB integers are laid out as BGRX bytes in native (little endian) memory
+                new IntPointer(colorData.position(0)).put(((DataBufferInt) source.getRaster().getDataBuffer()).getData());
+                cvtColor(colorImage, grayImage, CV_BGRA2GRAY);
+            }
+            return grayImage;
+        }
+
+        /**
+         * Copies a range of rows of a grayscale image into the block buffer
+         *
+         * @return A grayscale Mat holding the rows
+         */
+        Mat loadBlock(Mat source, int from, int to) {
+            resizeBlock(source.cols(), to - from);
+            Mat rows = source.rowRange(from, to);
+            try {
+                rows.copyTo(blockImage);
+            } finally {
+                rows.deallocate();
+            }
+            return blockImage;
+        }
+
+        /**
+         * Copies rows of the block buffer into the pixels of a heap image of the same width
+         *
+         * @param from      First row to copy
+         * @param count     Number of rows
+         * @param target    Pixels of the target image
+         * @param targetRow Row of the target image receiving the first row
+         */
+        void copyBlock(int from, int count, byte[] target, int targetRow) {
+            blockData.position((long) from * blockWidth).get(target, targetRow * blockWidth, count * blockWidth);
+        }
+
+        /**
+         * Copies a tone curve into native memory
+         *
+         * @return A 1x256 Mat holding the curve
+         */
+        Mat loadCurve(byte[] toneCurve) {
+            curveData.position(0).put(toneCurve, 0, TONE_LEVELS);
+            return curve;
+        }
+
+        /**
+         * Copies the grayscale buffer into a new heap image
+         */
+        BufferedImage toBufferedImage() {
+            BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+            grayData.position(0).get(((DataBufferByte) result.getRaster().getDataBuffer()).getData());
+
+            return result;
+        }
+
+        void release() {
+            releaseHeaders();
+            deallocate(blockImage);
+            blockImage = null;
+            nativeBytes.addAndGet(-(colorCapacity + grayCapacity + blockCapacity));
+            deallocate(colorData);
+            deallocate(grayData);
+            deallocate(blockData);
+            colorData = null;
+            grayData = null;
+            blockData = null;
+            colorCapacity = 0;
+            grayCapacity = 0;
+            blockCapacity = 0;
+            kernel.deallocate();
+            curve.deallocate();
+            curveData.deallocate();
+            blurKernelSize.deallocate();
+            smoothKernelSize.deallocate();
+            morphKernelSize.deallocate();
+        }
+
+        private void resize(int newWidth, int newHeight, int newChannels) {
+            if (newWidth == width && newHeight == height && newChannels == channels && grayImage != null) {
+                return;
+            }
+            releaseHeaders();
+            int pixels = newWidth * newHeight;
+            int colorBytes = newChannels == 1 ? 0 : pixels * newChannels;
+            if (colorBytes > colorCapacity) {
+                colorCapacity = grow(colorData, colorCapacity, colorBytes);
+                colorData = new BytePointer(colorCapacity);
+            }
+            if (pixels > grayCapacity) {
+                grayCapacity = grow(grayData, grayCapacity, pixels);
+                grayData = new BytePointer(grayCapacity);
+            }
+
+            width = newWidth;
+            height = newHeight;
+            channels = newChannels;
+            grayImage = new Mat(height, width, CV_8UC1, grayData.position(0));
+            if (channels > 1) {
+                colorImage = new Mat(height, width, channels == 3 ? CV_8UC3 : CV_8UC4, colorData.position(0));
+            }
+        }
+
+        private void resizeBlock(int newWidth, int newHeight) {
+            if (newWidth == blockWidth && newHeight == blockHeight && blockImage != null) {
+                return;
+            }
+            deallocate(blockImage);
+            int pixels = newWidth * newHeight;
+            if (pixels > blockCapacity) {
+                blockCapacity = grow(blockData, blockCapacity, pixels);
+                blockData = new BytePointer(blockCapacity);
+            }
+
+            blockWidth = newWidth;
+            blockHeight = newHeight;
+            blockImage = new Mat(blockHeight, blockWidth, CV_8UC1, blockData.position(0));
+        }
+
+        /**
+         * Frees a buffer that is too small and accounts for the one replacing it
+         *
+         * @return Capacity of the new buffer
+         */
+        private int grow(BytePointer buffer, int capacity, int bytes) {
+            deallocate(buffer);
+            int size = (int) Math.min(Integer.MAX_VALUE, Math.max(bytes, (long) (bytes * GROWTH_FACTOR)));
+            nativeBytes.addAndGet(size - capacity);
+
+            return size;
+        }
+
+        private void releaseHeaders() {
+            deallocate(colorImage);
+            deallocate(grayImage);
+            colorImage = null;
+            grayImage = null;
+        }
+    }
+
+    /**
+     * Returns an image whose pixels can be copied as is into native memory: 8 bit grayscale, 3 byte BGR or packed RGB
+     * integers. Any other layout is converted to 3 byte BGR
+     */
+    private static BufferedImage asSupportedType(BufferedImage image) {
+        Raster raster = image.getRaster();
+        boolean plain = raster.getParent() == null && raster.getDataBuffer().getNumBanks() == 1
+                && raster.getDataBuffer().getOffset() == 0 && raster.getSampleModelTranslateX() == 0
+                && raster.getSampleModelTranslateY() == 0;
+        if (plain) {
+            switch (image.getType()) {
+                case BufferedImage.TYPE_BYTE_GRAY:
+                    if (((ComponentSampleModel) image.getSampleModel()).getScanlineStride() == image.getWidth()) {
+                        return image;
+                    }
+                    break;
+                case BufferedImage.TYPE_3BYTE_BGR:
+                    if (((ComponentSampleModel) image.getSampleModel()).getScanlineStride() == image.getWidth() * 3) {
+                        return image;
+                    }
+                    break;
+                case BufferedImage.TYPE_INT_RGB:
+                case BufferedImage.TYPE_INT_ARGB:
+                    if (((SinglePixelPackedSampleModel) image.getSampleModel()).getScanlineStride() == image.getWidth()) {
+                        return image;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        BufferedImage converted = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D graphics = converted.createGraphics();
+        try {
+            graphics.drawImage(image, 0, 0, null);
+        } finally {
+            graphics.dispose();
+        }
+        return converted;
+    }
+
+    private static void deallocate(Pointer pointer) {
+        if (pointer != null) {
+            pointer.deallocate();
         }
-        return original;
     }
 }
@@ -0,0 +1,17 @@
+package com.utility.api.core.ocr.processor;
+
+/**
+ * How {@link ImageProcessor} scales images before recognition
+ */
+public enum ResizeMode {
+
+    /**
+     * Downscaled to 1000 pixels with ULTRA_QUALITY, binarized and upscaled to 2000 pixels, whatever the text size
+     */
+    FIXED,
+
+    /**
+     * The text height is estimated and the image resized once so the text gets the height Tesseract works best with
+     */
+    ADAPTIVE
+}
@@ -0,0 +1,99 @@
+package com.utility.api.core.ocr.processor;
+
+import org.imgscalr.Scalr;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * Estimates the height of the lines of text of an image from a cheap downsampled copy. The copy is split into vertical
+ * strips, so skewed lines don't merge, and the rows of every strip are grouped into bands of dark pixels. The median
+ * band height is taken as the text height
+ */
+class TextHeightEstimator {
+
+    private static final int PROBE_SIZE = 800;
+    private static final int STRIPS = 4;
+    // Pixels darker than this ratio of the strip mean luminance are considered ink
+    private static final float INK_THRESHOLD = 0.75f;
+    // Rows with less ink than this ratio of the strip width are considered blank
+    private static final float MIN_ROW_INK = 0.02f;
+    private static final int MIN_BAND_HEIGHT = 3;
+    private static final int MIN_BANDS = 5;
+
+    /**
+     * @param image     Image to be analyzed
+     *
+     * @return Estimated text height in pixels of the given image, or -1 if not enough lines were found
+     */
+    static int estimate(BufferedImage image) {
+        BufferedImage probe = Scalr.resize(image, Scalr.Method.SPEED, PROBE_SIZE);
+        try {
+            int width = probe.getWidth();
+            int height = probe.getHeight();
+            int[] luminance = getLuminance(probe);
+            int maxBandHeight = height / 10;
+            int[] bands = new int[height * STRIPS / 2 + 1];
+            int count = 0;
+
+            int stripWidth = width / STRIPS;
+            for (int strip = 0; strip < STRIPS; strip++) {
+                int left = strip * stripWidth;
+                int threshold = (int) (getMean(luminance, width, height, left, stripWidth) * INK_THRESHOLD);
+                int minInk = Math.max(1, (int) (stripWidth * MIN_ROW_INK));
+                int start = -1;
+                for (int y = 0; y <= height; y++) {
+                    boolean ink = y < height && countInk(luminance, y * width + left, stripWidth, threshold) >= minInk;
+                    if (ink && start < 0) {
+                        start = y;
+                    } else if (!ink && start >= 0) {
+                        int bandHeight = y - start;
+                        if (bandHeight >= MIN_BAND_HEIGHT && bandHeight <= maxBandHeight) {
+                            bands[count++] = bandHeight;
+                        }
+                        start = -1;
+                    }
+                }
+            }
+            if (count < MIN_BANDS) {
+                return -1;
+            }
+            Arrays.sort(bands, 0, count);
+            float scale = (float) image.getHeight() / height;
+
+            return Math.round(bands[count / 2] * scale);
+        } finally {
+            probe.flush();
+        }
+    }
+
+    private static int[] getLuminance(BufferedImage image) {
+        int[] rgb = image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+        for (int i = 0; i < rgb.length; i++) {
+            int color = rgb[i];
+            rgb[i] = (((color >>> 16) & 0xFF) * 54 + ((color >>> 8) & 0xFF) * 183 + (color & 0xFF) * 19) >>> 8;
+        }
+        return rgb;
+    }
+
+    private static int getMean(int[] luminance, int width, int height, int left, int stripWidth) {
+        long total = 0;
+        for (int y = 0; y < height; y++) {
+            int offset = y * width + left;
+            for (int x = 0; x < stripWidth; x++) {
+                total += luminance[offset + x];
+            }
+        }
+        return (int) (total / Math.max(1L, (long) height * stripWidth));
+    }
+
+    private static int countInk(int[] luminance, int offset, int length, int threshold) {
+        int ink = 0;
+        for (int i = offset; i < offset + length; i++) {
+            if (luminance[i] < threshold) {
+                ink++;
+            }
+        }
+        return ink;
+    }
+}
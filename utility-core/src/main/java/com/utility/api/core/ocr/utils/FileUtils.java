@@ -1,11 +1,17 @@
 package com.utility.api.core.ocr.utils;
 
+import com.google.common.io.ByteStreams;
 import com.google.common.io.Files;
 import com.utility.api.core.ocr.exception.OcrException;
 import org.apache.log4j.Logger;
 
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.UUID;
 
 public class FileUtils {
@@ -35,6 +41,47 @@ public class FileUtils {
         return file;
     }
 
+    /**
+     * Writes an image as a PNG temporary file. Used to inspect the images handed to Tesseract
+     *
+     * @param image     Image to be written
+     *
+     * @return A java.io.File object containing the specified image
+     *
+     * @throws IOException If the file cannot be created
+     */
+    public static File createTemporaryFile(BufferedImage image) throws IOException {
+        File file = new File(TMP_PREFIX + UUID.randomUUID() + ".png");
+        try {
+            ImageIO.write(image, SupportedMimeType.PNG.name().toLowerCase(), file);
+        } catch (IOException e) {
+            deleteTemporaryFile(file);
+            throw new IOException("Could not create temporary file for image scan", e);
+        }
+        return file;
+    }
+
+    /**
+     * Copies a stream into a temporary file in the system temporary directory, so large documents can be read page by
+     * page without holding them in memory. The stream is not closed
+     *
+     * @param content   Content to be copied
+     *
+     * @return The temporary file, to be removed using {@link #deleteTemporaryFile(File)}
+     *
+     * @throws IOException If the content cannot be read or the file cannot be written
+     */
+    public static File spool(InputStream content) throws IOException {
+        File file = File.createTempFile(TMP_PREFIX, ".scan");
+        try (OutputStream output = new FileOutputStream(file)) {
+            ByteStreams.copy(content, output);
+        } catch (IOException e) {
+            deleteTemporaryFile(file);
+            throw e;
+        }
+        return file;
+    }
+
     /**
      * Deletes a file. Used to delete temporary files created for the engine to process. This method is nullSafe
      *
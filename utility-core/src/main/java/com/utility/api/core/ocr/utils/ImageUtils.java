@@ -0,0 +1,66 @@
+package com.utility.api.core.ocr.utils;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.Raster;
+
+public class ImageUtils {
+
+    /**
+     * Returns an 8 bit grayscale version of the image whose pixels are held in a single byte array. The image itself is
+     * returned when it already fulfills these requirements, so no copy is made
+     *
+     * @param image     Image to be converted
+     *
+     * @return A TYPE_BYTE_GRAY image backed by a {@link DataBufferByte}
+     */
+    public static BufferedImage toGrayscale(BufferedImage image) {
+        if (isPlainGrayscale(image)) {
+            return image;
+        }
+        BufferedImage gray = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D graphics = gray.createGraphics();
+        try {
+            graphics.drawImage(image, 0, 0, null);
+        } finally {
+            graphics.dispose();
+        }
+        return gray;
+    }
+
+    /**
+     * Returns the pixel data of an image obtained from {@link #toGrayscale(BufferedImage)}, one byte per pixel
+     *
+     * @param image     8 bit grayscale image
+     */
+    public static byte[] getGrayscaleData(BufferedImage image) {
+        return ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+    }
+
+    /**
+     * Returns the number of bytes between the start of two consecutive rows of an image obtained from
+     * {@link #toGrayscale(BufferedImage)}
+     *
+     * @param image     8 bit grayscale image
+     */
+    public static int getScanlineStride(BufferedImage image) {
+        return ((ComponentSampleModel) image.getSampleModel()).getScanlineStride();
+    }
+
+    /**
+     * @return True if the image is 8 bit grayscale and its pixels are held in a single byte array starting at its first
+     * pixel
+     */
+    public static boolean isPlainGrayscale(BufferedImage image) {
+        if (image.getType() != BufferedImage.TYPE_BYTE_GRAY) {
+            return false;
+        }
+        Raster raster = image.getRaster();
+
+        return raster.getParent() == null && raster.getDataBuffer().getNumBanks() == 1
+                && raster.getDataBuffer().getOffset() == 0 && raster.getSampleModelTranslateX() == 0
+                && raster.getSampleModelTranslateY() == 0;
+    }
+}
@@ -0,0 +1,148 @@
+package com.utility.api.core.ocr.utils;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+
+/**
+ * Histogram of the luminance of an image, sampled over the whole image on a regular grid. Pixels are read straight
+ * from the primitive array backing the raster for byte interleaved and packed integer images, any other layout falls
+ * back to {@link BufferedImage#getRGB(int, int)}
+ */
+public class LuminanceHistogram {
+
+    private static final int LEVELS = 256;
+    // Pixels are skipped on both axes so no more than about this many samples are taken
+    private static final int MAX_SAMPLES = 1 << 18;
+
+    private final int[] counts = new int[LEVELS];
+    private int total;
+
+    private LuminanceHistogram() {
+    }
+
+    /**
+     * Builds the histogram of an image
+     *
+     * @param image     Image to be analyzed
+     *
+     * @return The luminance histogram of the image
+     */
+    public static LuminanceHistogram of(BufferedImage image) {
+        LuminanceHistogram histogram = new LuminanceHistogram();
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int step = Math.max(1, (int) Math.ceil(Math.sqrt((double) width * height / MAX_SAMPLES)));
+
+        Raster raster = image.getRaster();
+        SampleModel model = raster.getSampleModel();
+        DataBuffer buffer = raster.getDataBuffer();
+        boolean plain = raster.getParent() == null && buffer.getNumBanks() == 1 && buffer.getOffset() == 0
+                && raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0;
+
+        if (plain && buffer instanceof DataBufferByte && model instanceof ComponentSampleModel
+                && !(image.getColorModel() instanceof IndexColorModel)) {
+            histogram.addBytes(((DataBufferByte) buffer).getData(), (ComponentSampleModel) model, width, height, step);
+        } else if (plain && buffer instanceof DataBufferInt && model instanceof SinglePixelPackedSampleModel
+                && model.getNumBands() >= 3 && isRgb((SinglePixelPackedSampleModel) model)) {
+            histogram.addInts(((DataBufferInt) buffer).getData(),
+                    ((SinglePixelPackedSampleModel) model).getScanlineStride(), width, height, step);
+        } else {
+            for (int y = 0; y < height; y += step) {
+                for (int x = 0; x < width; x += step) {
+                    histogram.add(luminance(image.getRGB(x, y)));
+                }
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * @param fraction  Fraction of the samples, between 0 and 1
+     *
+     * @return The lowest luminance level such that the given fraction of the samples is at or below it
+     */
+    public int percentile(float fraction) {
+        long limit = (long) Math.ceil(fraction * total);
+        long accumulated = 0;
+        for (int level = 0; level < LEVELS; level++) {
+            accumulated += counts[level];
+            if (accumulated >= limit && accumulated > 0) {
+                return level;
+            }
+        }
+        return LEVELS - 1;
+    }
+
+    /**
+     * @return Number of pixels sampled
+     */
+    public int getSampleCount() {
+        return total;
+    }
+
+    private void addBytes(byte[] data, ComponentSampleModel model, int width, int height, int step) {
+        int scanline = model.getScanlineStride();
+        int pixelStride = model.getPixelStride();
+        int[] offsets = model.getBandOffsets();
+        if (offsets.length < 3) {
+            // Single band, the sample is the luminance
+            for (int y = 0; y < height; y += step) {
+                int row = y * scanline + offsets[0];
+                for (int x = 0; x < width; x += step) {
+                    add(data[row + x * pixelStride] & 0xFF);
+                }
+            }
+            return;
+        }
+        int red = offsets[0];
+        int green = offsets[1];
+        int blue = offsets[2];
+        for (int y = 0; y < height; y += step) {
+            int row = y * scanline;
+            for (int x = 0; x < width; x += step) {
+                int pixel = row + x * pixelStride;
+                add(luminance(data[pixel + red] & 0xFF, data[pixel + green] & 0xFF, data[pixel + blue] & 0xFF));
+            }
+        }
+    }
+
+    private void addInts(int[] data, int scanline, int width, int height, int step) {
+        for (int y = 0; y < height; y += step) {
+            int row = y * scanline;
+            for (int x = 0; x < width; x += step) {
+                add(luminance(data[row + x]));
+            }
+        }
+    }
+
+    private void add(int level) {
+        counts[level]++;
+        total++;
+    }
+
+    /**
+     * Only the usual 0x00RRGGBB layout is read directly
+     */
+    private static boolean isRgb(SinglePixelPackedSampleModel model) {
+        int[] masks = model.getBitMasks();
+        return masks[0] == 0xFF0000 && masks[1] == 0xFF00 && masks[2] == 0xFF;
+    }
+
+    private static int luminance(int color) {
+        return luminance((color >>> 16) & 0xFF, (color >>> 8) & 0xFF, color & 0xFF);
+    }
+
+    /**
+     * SRGB luminance constants in 8 bit fixed point
+     */
+    private static int luminance(int red, int green, int blue) {
+        return (red * 54 + green * 183 + blue * 19) >>> 8;
+    }
+}
@@ -0,0 +1,73 @@
+package com.utility.api.core.ocr.utils;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Difference hash of an image: the luminance is averaged over a grid of 9 by 8 cells and every bit tells whether a
+ * cell is brighter than its right neighbour. Photos of the same receipt taken with a slightly different framing,
+ * exposure or resolution give hashes a few bits apart, see {@link #distance(long, long)}
+ *
+ * The cells are averaged over pixels sampled on a regular grid, so the cost doesn't grow with the image size
+ */
+public class PerceptualHash {
+
+    private static final int COLUMNS = 9;
+    private static final int ROWS = 8;
+    // Pixels are skipped on both axes so no more than about this many samples are taken
+    private static final int MAX_SAMPLES = 1 << 16;
+
+    private PerceptualHash() {
+    }
+
+    /**
+     * Computes the hash of an image
+     *
+     * @param image     Image to be hashed
+     *
+     * @return 64 bit hash, row by row from the top left cell in the most significant bit
+     */
+    public static long of(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int step = Math.max(1, (int) Math.ceil(Math.sqrt((double) width * height / MAX_SAMPLES)));
+        long[] sums = new long[COLUMNS * ROWS];
+        int[] counts = new int[COLUMNS * ROWS];
+        int[] columns = new int[width];
+        for (int x = 0; x < width; x += step) {
+            columns[x] = (int) ((long) x * COLUMNS / width);
+        }
+        for (int y = 0; y < height; y += step) {
+            int row = (int) ((long) y * ROWS / height) * COLUMNS;
+            for (int x = 0; x < width; x += step) {
+                int cell = row + columns[x];
+                sums[cell] += luminance(image.getRGB(x, y));
+                counts[cell]++;
+            }
+        }
+
+        long hash = 0;
+        for (int row = 0; row < ROWS; row++) {
+            for (int column = 0; column < COLUMNS - 1; column++) {
+                int cell = row * COLUMNS + column;
+                // Compared as sum * other count to avoid rounding the means
+                boolean brighter = sums[cell] * counts[cell + 1] > sums[cell + 1] * counts[cell];
+                hash = (hash << 1) | (brighter ? 1 : 0);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * @return Number of bits differing between two hashes, from 0 for the same image to 64
+     */
+    public static int distance(long hash, long other) {
+        return Long.bitCount(hash ^ other);
+    }
+
+    /**
+     * SRGB luminance constants in 8 bit fixed point, as {@link LuminanceHistogram} does
+     */
+    private static int luminance(int color) {
+        return (((color >>> 16) & 0xFF) * 54 + ((color >>> 8) & 0xFF) * 183 + (color & 0xFF) * 19) >>> 8;
+    }
+}
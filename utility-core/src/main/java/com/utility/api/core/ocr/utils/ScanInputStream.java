@@ -0,0 +1,135 @@
+package com.utility.api.core.ocr.utils;
+
+import com.utility.api.core.ocr.exception.UploadTooLargeException;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Buffered stream over an uploaded image. Supports mark/reset so the media type can be sniffed from the first bytes,
+ * fails as soon as more bytes than allowed are read and computes the SHA-256 digest of the content while it is read
+ */
+public class ScanInputStream extends BufferedInputStream {
+
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private static final int BUFFER_SIZE = 8192;
+
+    private final DigestInputStream digestStream;
+    private final LimitedInputStream limitedStream;
+
+    /**
+     * @param in        Uploaded content
+     * @param maxSize   Maximum number of bytes allowed, or a negative number for no limit
+     */
+    public ScanInputStream(InputStream in, long maxSize) {
+        this(new LimitedInputStream(in, maxSize));
+    }
+
+    private ScanInputStream(LimitedInputStream limitedStream) {
+        this(limitedStream, new DigestInputStream(limitedStream, newDigest()));
+    }
+
+    private ScanInputStream(LimitedInputStream limitedStream, DigestInputStream digestStream) {
+        super(digestStream, BUFFER_SIZE);
+        this.limitedStream = limitedStream;
+        this.digestStream = digestStream;
+    }
+
+    /**
+     * Tells whether the content went over the maximum size. Decoders may wrap the {@link UploadTooLargeException} into
+     * their own exceptions, so this is the reliable way to find out after a failure
+     */
+    public boolean isLimitExceeded() {
+        return limitedStream.exceeded;
+    }
+
+    /**
+     * @return Number of bytes read from the upload so far
+     */
+    public long getBytesRead() {
+        return limitedStream.count;
+    }
+
+    /**
+     * Reads whatever is left of the content so the digest covers all of it. Decoders don't always read the trailing
+     * bytes of an image
+     *
+     * @throws IOException if the content cannot be read or is bigger than allowed
+     */
+    public void drain() throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        while (read(buffer) != -1) {
+            // read until the end of the content
+        }
+    }
+
+    /**
+     * Returns the SHA-256 digest of the content. The whole content must have been read before, see {@link #drain()}
+     */
+    public byte[] getDigest() {
+        return digestStream.getMessageDigest().digest();
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(DIGEST_ALGORITHM + " not available", e);
+        }
+    }
+
+    private static class LimitedInputStream extends FilterInputStream {
+
+        private final long maxSize;
+        private long count;
+        private boolean exceeded;
+
+        LimitedInputStream(InputStream in, long maxSize) {
+            super(in);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value != -1) {
+                count(1);
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count(read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count(skipped);
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void count(long bytes) throws UploadTooLargeException {
+            count += bytes;
+            if (maxSize >= 0 && count > maxSize) {
+                exceeded = true;
+                throw new UploadTooLargeException("Upload exceeds the maximum size of " + maxSize + " bytes");
+            }
+        }
+    }
+}
@@ -2,22 +2,36 @@ package com.utility.api.core.ocr.utils;
 
 public enum SupportedMimeType {
 
-    PNG("image/png"),
-    JPEG("image/jpeg"),
-    TIFF("image/tiff"),
-    PDF("application/pdf"),
-    BMP("image/bmp");
+    PNG("image/png", false, new byte[]{(byte) 0x89, 'P', 'N', 'G'}),
+    JPEG("image/jpeg", false, new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF}),
+    TIFF("image/tiff", true, new byte[]{'I', 'I', 42, 0}, new byte[]{'M', 'M', 0, 42}),
+    PDF("application/pdf", true, new byte[]{'%', 'P', 'D', 'F'}),
+    BMP("image/bmp", false, new byte[]{'B', 'M'});
+
+    /** Number of bytes needed to tell every supported type apart */
+    public static final int HEADER_LENGTH = 4;
 
     private String value;
+    private boolean document;
+    private byte[][] signatures;
 
-    SupportedMimeType(String value) {
+    SupportedMimeType(String value, boolean document, byte[]... signatures) {
         this.value = value;
+        this.document = document;
+        this.signatures = signatures;
     }
 
     public String getValue() {
         return value;
     }
 
+    /**
+     * @return True if files of this type may hold several pages and must be read as a document
+     */
+    public boolean isDocument() {
+        return document;
+    }
+
     public static SupportedMimeType fromValue(String value) {
         for (SupportedMimeType mime : values()) {
             if (mime.getValue().equals(value)) {
@@ -26,4 +40,35 @@ public enum SupportedMimeType {
         }
         return null;
     }
+
+    /**
+     * Detects the type of a file by the magic number at its start
+     *
+     * @param header    First bytes of the file
+     * @param length    Number of valid bytes in the header
+     *
+     * @return The type of the file, or null if it is not supported
+     */
+    public static SupportedMimeType fromContent(byte[] header, int length) {
+        for (SupportedMimeType mime : values()) {
+            for (byte[] signature : mime.signatures) {
+                if (startsWith(header, length, signature)) {
+                    return mime;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean startsWith(byte[] header, int length, byte[] signature) {
+        if (length < signature.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if (header[i] != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
 }
@@ -1,13 +1,21 @@
 package com.utility.api.core.processor;
 
+import com.utility.api.core.processor.rules.ParserRules;
 import lombok.Data;
 
 @Data
 public class ProcessContext {
 
     private String rawData;
+    /** Rules to parse the data with, the default ones if null */
+    private ParserRules rules;
 
     public ProcessContext(String rawData) {
         this.rawData = rawData;
     }
+
+    public ProcessContext(String rawData, ParserRules rules) {
+        this.rawData = rawData;
+        this.rules = rules;
+    }
 }
@@ -0,0 +1,439 @@
+package com.utility.api.core.processor.impl;
+
+import com.utility.api.core.processor.rules.DigitGroup;
+import com.utility.api.core.processor.rules.ParserRules;
+import com.utility.api.entity.TicketLine;
+import com.utility.api.entity.TicketLineBatch;
+
+import java.util.Arrays;
+
+/**
+ * Hand-written scanner extracting a {@link TicketLine} from a raw OCR line following a set of {@link ParserRules}.
+ * With the default rules it produces exactly the same output as the former regex based implementation of
+ * {@link TicketLineProcessor}:
+ *
+ * - Quotes, exclamation and question marks, accents and dashes are removed
+ * - " . " sequences are collapsed into a single space
+ * - Blanks around a comma between two digits are removed
+ * - Prices (digits, comma and two decimals) are found and every occurrence of each price is removed
+ * - The name starts after the last digit followed by a space appearing before the second letter
+ * - Every occurrence of the name is removed and the remaining digit groups give the position and quantity
+ *
+ * Other rules change the removed chars, the decimal separator and number of decimals, the letters read before the
+ * name, the digit groups holding quantity and position, and may drop lines by the start of their name.
+ *
+ * All of it works over a reusable char buffer and primitive fields, the only objects created are the name and, unless
+ * the line is added to a {@link TicketLineBatch}, the resulting TicketLine. Prices are rounded straight to cents. Lines
+ * whose price is not finite or doesn't fit into a long of cents are dropped. Instances keep state between calls and are
+ * therefore not thread-safe
+ */
+class TicketLineScanner {
+
+    private static final int INITIAL_CAPACITY = 128;
+    // Values below this limit are exactly representable as floats
+    private static final long FLOAT_EXACT_LIMIT = 1L << 24;
+    private static final int MAX_LONG_DIGITS = 18;
+    // Prices from this value on cannot be held as a long of cents
+    private static final float MAX_PRICE = 9.0e16f;
+
+    private char[] data = new char[INITIAL_CAPACITY];
+    private char[] original = new char[INITIAL_CAPACITY];
+    private int length;
+
+    private int[] priceStarts = new int[4];
+    private int[] priceEnds = new int[4];
+    private int priceCount;
+
+    private int digitCount;
+    private int firstDigit;
+    private int lastDigit;
+
+    private String name;
+    private int quantity;
+    private long priceCents;
+    private int position;
+
+    /**
+     * Scans a range of a text holding a single line
+     *
+     * @param source    Text containing the line
+     * @param start     Index of the first char of the line
+     * @param end       Index after the last char of the line
+     * @param rules     Rules to parse the line with
+     *
+     * @return The line found, or null if the line holds no price or is ignored
+     */
+    TicketLine scan(CharSequence source, int start, int end, ParserRules rules) {
+        if (!parse(source, start, end, rules)) {
+            return null;
+        }
+        return new TicketLine(name, quantity, TicketLineBatch.toPrice(priceCents),
+                position != TicketLineBatch.NO_POSITION ? position : null);
+    }
+
+    /**
+     * Scans a range of a text holding a single line and adds the line found to a batch
+     *
+     * @param source    Text containing the line
+     * @param start     Index of the first char of the line
+     * @param end       Index after the last char of the line
+     * @param rules     Rules to parse the line with
+     * @param batch     Batch receiving the line
+     *
+     * @return False if the line holds no price or is ignored
+     */
+    boolean scan(CharSequence source, int start, int end, ParserRules rules, TicketLineBatch batch) {
+        if (!parse(source, start, end, rules)) {
+            return false;
+        }
+        batch.add(name, quantity, priceCents, position);
+        return true;
+    }
+
+    private boolean parse(CharSequence source, int start, int end, ParserRules rules) {
+        load(source, start, end, rules);
+        joinDecimals(rules.getDecimalSeparator());
+        if (!trim() || rules.isIgnored(data, 0, length)) {
+            return false;
+        }
+        findPrices(rules.getDecimalSeparator(), rules.getDecimals());
+        if (priceCount == 0) {
+            return false;
+        }
+        System.arraycopy(data, 0, original, 0, length);
+        for (int i = 0; i < priceCount; i++) {
+            removeAll(original, priceStarts[i], priceEnds[i] - priceStarts[i]);
+        }
+        if (!readName(rules)) {
+            return false;
+        }
+        if (!name.isEmpty()) {
+            removeAll(name);
+        }
+        findDigits();
+
+        return adjust(rules);
+    }
+
+    /**
+     * Copies the line into the buffer removing the unwanted chars and, if the rules say so, collapsing " . " sequences
+     * into a space. A collapsed space is never the start of another sequence
+     */
+    private void load(CharSequence source, int start, int end, ParserRules rules) {
+        ensureCapacity(end - start);
+        boolean collapseDots = rules.isCollapseDots();
+        int n = 0;
+        int collapsed = -1;
+        for (int i = start; i < end; i++) {
+            char c = source.charAt(i);
+            if (rules.isRemoved(c)) {
+                continue;
+            }
+            data[n++] = c;
+            if (collapseDots && c == ' ' && n - 3 > collapsed && data[n - 2] == '.' && data[n - 3] == ' ') {
+                n -= 2;
+                collapsed = n - 1;
+            }
+        }
+        length = n;
+    }
+
+    /**
+     * Removes the blanks around a decimal separator preceded and followed by a digit
+     */
+    private void joinDecimals(char separator) {
+        int w = 0;
+        char previous = 0;
+        int r = 0;
+        while (r < length) {
+            char c = data[r];
+            if (r > 0 && isDigit(previous) && (c == ' ' || c == separator)) {
+                int comma = skipBlanks(r);
+                if (comma < length && data[comma] == separator) {
+                    int next = skipBlanks(comma + 1);
+                    if (next < length && isDigit(data[next])) {
+                        previous = data[next - 1];
+                        data[w++] = separator;
+                        r = next;
+                        continue;
+                    }
+                }
+            }
+            data[w++] = c;
+            previous = c;
+            r++;
+        }
+        length = w;
+    }
+
+    /**
+     * Removes leading and trailing control chars and blanks, as {@link String#trim()} does
+     *
+     * @return False if nothing is left
+     */
+    private boolean trim() {
+        int start = 0;
+        int end = length;
+        while (start < end && data[start] <= ' ') {
+            start++;
+        }
+        while (end > start && data[end - 1] <= ' ') {
+            end--;
+        }
+        if (start > 0) {
+            System.arraycopy(data, start, data, 0, end - start);
+        }
+        length = end - start;
+
+        return length > 0;
+    }
+
+    /**
+     * Finds the prices of the line from left to right: a group of digits followed by the decimal separator and the
+     * decimals
+     */
+    private void findPrices(char separator, int decimals) {
+        priceCount = 0;
+        int i = 0;
+        while (i < length) {
+            if (!isDigit(data[i])) {
+                i++;
+                continue;
+            }
+            int groupEnd = i;
+            while (groupEnd < length && isDigit(data[groupEnd])) {
+                groupEnd++;
+            }
+            int priceEnd = groupEnd + 1 + decimals;
+            if (priceEnd <= length && data[groupEnd] == separator && areDigits(groupEnd + 1, priceEnd)) {
+                addPrice(i, priceEnd);
+                i = priceEnd;
+            } else {
+                i = groupEnd;
+            }
+        }
+    }
+
+    /**
+     * The name starts after the last digit followed by a space found while less than the given letters have been
+     * read. When there is none the first char is skipped
+     *
+     * @return False if the name starts with an ignored prefix
+     */
+    private boolean readName(ParserRules rules) {
+        int nameLetters = rules.getNameLetters();
+        if (length == 0) {
+            throw new StringIndexOutOfBoundsException(-1);
+        }
+        int numIndex = 0, letterCount = 0;
+        for (int i = 0; i < length; i++) {
+            char character = data[i];
+            if (Character.isLetter(character)) {
+                letterCount++;
+            }
+            if (letterCount < nameLetters && i < length - 1 && data[i + 1] == ' ' && Character.isDigit(character)) {
+                numIndex = i;
+            }
+        }
+        int start = numIndex + 1;
+        int end = length;
+        while (start < end && data[start] <= ' ') {
+            start++;
+        }
+        while (end > start && data[end - 1] <= ' ') {
+            end--;
+        }
+        if (rules.isIgnored(data, start, end - start)) {
+            return false;
+        }
+        name = new String(data, start, end - start);
+        return true;
+    }
+
+    /**
+     * Reads the digit groups left after removing prices and name
+     *
+     * @throws NumberFormatException if a group doesn't fit into an int
+     */
+    private void findDigits() {
+        digitCount = 0;
+        int i = 0;
+        while (i < length) {
+            if (!isDigit(data[i])) {
+                i++;
+                continue;
+            }
+            int value = 0;
+            int start = i;
+            while (i < length && isDigit(data[i])) {
+                int digit = data[i] - '0';
+                if (value > (Integer.MAX_VALUE - digit) / 10) {
+                    throw new NumberFormatException("For input string: \"" + new String(data, start, i + 1 - start) + "\"");
+                }
+                value = value * 10 + digit;
+                i++;
+            }
+            if (digitCount == 0) {
+                firstDigit = value;
+            }
+            lastDigit = value;
+            digitCount++;
+        }
+    }
+
+    /**
+     * Works out quantity, unit price and position from the prices and digit groups found. A group holding the
+     * position is read before the quantity
+     *
+     * @return False if the price cannot be held as cents
+     */
+    private boolean adjust(ParserRules rules) {
+        DigitGroup positionGroup = rules.getPosition();
+        DigitGroup quantityGroup = rules.getQuantity();
+        int positionGroups = positionGroup != DigitGroup.NONE ? 1 : 0;
+        quantity = quantityGroup != DigitGroup.NONE && digitCount > positionGroups ? getDigits(quantityGroup) : 1;
+        position = positionGroups > 0 && digitCount > 0 ? getDigits(positionGroup) : TicketLineBatch.NO_POSITION;
+        float scale = rules.getDecimalScale();
+        char separator = rules.getDecimalSeparator();
+        float price;
+        if (priceCount > 1) {
+            float total = parsePrice(1, scale, separator);
+            if (quantity == 1) {
+                price = parsePrice(0, scale, separator);
+                quantity = Math.round(total / price);
+            } else {
+                price = total / quantity;
+            }
+        } else {
+            if (quantity > 1 && digitCount < rules.getSinglePriceQuantityGroups()) {
+                quantity = 1;
+            }
+            price = parsePrice(0, scale, separator);
+        }
+        if (!(price < MAX_PRICE)) {
+            return false;
+        }
+        priceCents = TicketLineBatch.toCents(price);
+        return true;
+    }
+
+    private int getDigits(DigitGroup group) {
+        return group == DigitGroup.FIRST ? firstDigit : lastDigit;
+    }
+
+    /**
+     * Parses a price as {@link Float#parseFloat(String)} would do with the decimal separator replaced by a dot. A
+     * float division of two exactly representable values is correctly rounded, so it gives the same result for any
+     * price below 2^24 units of its last decimal
+     *
+     * @param index     Index of the price among the ones found
+     * @param scale     Ten raised to the number of decimals
+     * @param separator Decimal separator of the price
+     */
+    private float parsePrice(int index, float scale, char separator) {
+        int start = priceStarts[index];
+        int end = priceEnds[index];
+        if (end - start - 1 <= MAX_LONG_DIGITS) {
+            long units = 0;
+            for (int i = start; i < end; i++) {
+                char c = original[i];
+                if (c != separator) {
+                    units = units * 10 + (c - '0');
+                }
+            }
+            if (units < FLOAT_EXACT_LIMIT) {
+                return (float) units / scale;
+            }
+        }
+        return Float.parseFloat(new String(original, start, end - start).replace(separator, '.'));
+    }
+
+    /**
+     * Removes every occurrence of a sequence from the buffer, from left to right and without overlapping
+     */
+    private void removeAll(char[] source, int offset, int count) {
+        int w = 0;
+        int r = 0;
+        while (r < length) {
+            if (r + count <= length && matches(r, source, offset, count)) {
+                r += count;
+            } else {
+                data[w++] = data[r++];
+            }
+        }
+        length = w;
+    }
+
+    private void removeAll(String text) {
+        int count = text.length();
+        int w = 0;
+        int r = 0;
+        while (r < length) {
+            if (r + count <= length && matches(r, text)) {
+                r += count;
+            } else {
+                data[w++] = data[r++];
+            }
+        }
+        length = w;
+    }
+
+    private boolean matches(int position, char[] source, int offset, int count) {
+        for (int i = 0; i < count; i++) {
+            if (data[position + i] != source[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean matches(int position, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (data[position + i] != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int skipBlanks(int index) {
+        while (index < length && data[index] == ' ') {
+            index++;
+        }
+        return index;
+    }
+
+    private void addPrice(int start, int end) {
+        if (priceCount == priceStarts.length) {
+            priceStarts = Arrays.copyOf(priceStarts, priceCount * 2);
+            priceEnds = Arrays.copyOf(priceEnds, priceCount * 2);
+        }
+        priceStarts[priceCount] = start;
+        priceEnds[priceCount] = end;
+        priceCount++;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (data.length < capacity) {
+            int size = Math.max(capacity, data.length * 2);
+            data = new char[size];
+            original = new char[size];
+        }
+    }
+
+    private boolean areDigits(int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!isDigit(data[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Only ASCII digits, as \d does in regular expressions
+     */
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
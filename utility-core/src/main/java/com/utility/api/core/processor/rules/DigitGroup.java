@@ -0,0 +1,14 @@
+package com.utility.api.core.processor.rules;
+
+/**
+ * Digit group of a line, left once prices and name are removed, holding a value such as the quantity or position
+ */
+public enum DigitGroup {
+
+    /** The first group of the line */
+    FIRST,
+    /** The last group of the line */
+    LAST,
+    /** The line doesn't hold the value */
+    NONE
+}
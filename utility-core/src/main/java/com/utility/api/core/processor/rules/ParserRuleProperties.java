@@ -0,0 +1,17 @@
+package com.utility.api.core.processor.rules;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix="parser.rules")
+@Data
+public class ParserRuleProperties {
+
+    /** Directory holding a JSON file per rule set, on top of the ones shipped with the service */
+    private String directory;
+    /** Seconds between checks of the directory for changed files, never checked if zero or negative. Defaults to 10 */
+    private Long reloadInterval;
+
+}
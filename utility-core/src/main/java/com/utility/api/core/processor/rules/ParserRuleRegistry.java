@@ -0,0 +1,222 @@
+package com.utility.api.core.processor.rules;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.log4j.Log4j;
+import org.apache.commons.lang3.ObjectUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registry of the rules lines are parsed with. Rule sets are read from the JSON files shipped under rules/ in the
+ * classpath and from the configured directory, and compiled into {@link ParserRules} as they are loaded. The directory
+ * is checked for new, changed and deleted files in the background, so rules can be added or fixed without a restart.
+ * A file that cannot be loaded leaves its previous rules in place
+ *
+ * Requests choose their rules by name. Those that don't get the rules of their locale, or the default ones. Requests
+ * whose locale is detected from the receipt get the rules of the detected locale
+ */
+@Log4j
+@Component
+public class ParserRuleRegistry {
+
+    private static final String BUILT_IN_RULES = "classpath*:rules/*.json";
+    private static final String RULES_EXTENSION = ".json";
+    private static final long DEFAULT_RELOAD_INTERVAL = 10L;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<String, ParserRules> builtIn;
+    private final File directory;
+    private final ScheduledExecutorService reloader;
+    // Rules of every file of the directory and the last modification seen of each one, only used while reloading
+    private final Map<File, ParserRules> loaded = new TreeMap<>();
+    private Map<File, String> versions = Collections.emptyMap();
+
+    private volatile Map<String, ParserRules> rules;
+
+    @Autowired
+    public ParserRuleRegistry(ParserRuleProperties properties) throws IOException {
+        this.builtIn = loadBuiltIn();
+        this.rules = builtIn;
+        this.directory = properties.getDirectory() != null ? new File(properties.getDirectory()) : null;
+        if (directory == null) {
+            this.reloader = null;
+            return;
+        }
+        if (!directory.isDirectory()) {
+            throw new IllegalArgumentException("Parser rules directory " + directory + " does not exist");
+        }
+        reload();
+
+        long interval = ObjectUtils.defaultIfNull(properties.getReloadInterval(), DEFAULT_RELOAD_INTERVAL);
+        if (interval > 0) {
+            this.reloader = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "parser-rules-reloader");
+                thread.setDaemon(true);
+                return thread;
+            });
+            reloader.scheduleAtFixedRate(this::reload, interval, interval, TimeUnit.SECONDS);
+        } else {
+            this.reloader = null;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (reloader != null) {
+            reloader.shutdownNow();
+        }
+    }
+
+    /**
+     * @return Names of the rules requests may ask for
+     */
+    public Set<String> getNames() {
+        return Collections.unmodifiableSet(rules.keySet());
+    }
+
+    /**
+     * Resolves the rules to be used by a request
+     *
+     * @param name      Name of the rules asked for, or null to choose them by locale
+     * @param locale    Locale of the request, null or one without rules of its own for the default rules
+     *
+     * @return The compiled rules
+     *
+     * @throws IllegalArgumentException if no rules have the given name
+     */
+    public ParserRules getRules(String name, String locale) {
+        return find(rules, name, locale);
+    }
+
+    /**
+     * Resolves the rules to be used by a request whose locale is detected from the receipt
+     *
+     * @param name      Name of the rules asked for, or null to choose them by the detected locale
+     * @param locales   Every locale the receipt may be detected as
+     *
+     * @return The named rules, or the rules of each of the locales
+     *
+     * @throws IllegalArgumentException if no rules have the given name
+     */
+    public ParserRuleSelection getDetectedRules(String name, Collection<String> locales) {
+        Map<String, ParserRules> current = rules;
+        if (name != null) {
+            return ParserRuleSelection.of(find(current, name, null));
+        }
+        Map<String, ParserRules> byLocale = new HashMap<>();
+        for (String locale : locales) {
+            byLocale.put(locale, find(current, null, locale));
+        }
+        return ParserRuleSelection.of(byLocale, find(current, null, null));
+    }
+
+    private static ParserRules find(Map<String, ParserRules> current, String name, String locale) {
+        if (name != null) {
+            ParserRules named = current.get(name);
+            if (named == null) {
+                throw new IllegalArgumentException("Unknown parser rules " + name);
+            }
+            return named;
+        }
+        if (locale != null) {
+            for (ParserRules candidate : current.values()) {
+                if (candidate.getLocales().contains(locale)) {
+                    return candidate;
+                }
+            }
+        }
+        return current.getOrDefault(ParserRules.DEFAULT_NAME, ParserRules.DEFAULT);
+    }
+
+    private Map<String, ParserRules> loadBuiltIn() throws IOException {
+        Map<String, ParserRules> result = new LinkedHashMap<>();
+        result.put(ParserRules.DEFAULT_NAME, ParserRules.DEFAULT);
+        for (Resource resource : new PathMatchingResourcePatternResolver().getResources(BUILT_IN_RULES)) {
+            try (InputStream input = resource.getInputStream()) {
+                ParserRules compiled = compile(input, resource.getFilename());
+                result.put(compiled.getName(), compiled);
+                log.info("Loaded parser rules " + compiled + " from " + resource);
+            }
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Loads the files of the directory changed since the last call, if any, and publishes the resulting rules. Rules
+     * from the directory replace the built-in ones of the same name
+     */
+    private synchronized void reload() {
+        try {
+            File[] files = directory.listFiles((dir, fileName) -> fileName.endsWith(RULES_EXTENSION));
+            if (files == null) {
+                log.error("Could not list parser rules directory " + directory);
+                return;
+            }
+            Map<File, String> current = new HashMap<>();
+            for (File file : files) {
+                current.put(file, file.lastModified() + ":" + file.length());
+            }
+            if (current.equals(versions)) {
+                return;
+            }
+            loaded.keySet().retainAll(current.keySet());
+            for (Map.Entry<File, String> entry : current.entrySet()) {
+                File file = entry.getKey();
+                if (!entry.getValue().equals(versions.get(file))) {
+                    load(file);
+                }
+            }
+            versions = current;
+
+            Map<String, ParserRules> next = new LinkedHashMap<>(builtIn);
+            for (ParserRules compiled : loaded.values()) {
+                next.put(compiled.getName(), compiled);
+            }
+            rules = Collections.unmodifiableMap(next);
+        } catch (RuntimeException e) {
+            log.error("Could not reload parser rules from " + directory, e);
+        }
+    }
+
+    private void load(File file) {
+        try (InputStream input = new FileInputStream(file)) {
+            ParserRules compiled = compile(input, file.getName());
+            loaded.put(file, compiled);
+            log.info("Loaded parser rules " + compiled + " from " + file);
+        } catch (IOException | IllegalArgumentException e) {
+            String kept = loaded.containsKey(file) ? ", keeping " + loaded.get(file) : "";
+            log.error("Could not load parser rules from " + file + kept, e);
+        }
+    }
+
+    /**
+     * Reads and compiles a rule set, named after its file unless it has a name of its own
+     *
+     * @throws IOException if the rule set cannot be read
+     * @throws IllegalArgumentException if any of its rules is not valid
+     */
+    private ParserRules compile(InputStream input, String fileName) throws IOException {
+        ParserRuleSet ruleSet = mapper.readValue(input, ParserRuleSet.class);
+        String name = StringUtils.defaultIfBlank(ruleSet.getName(), StringUtils.removeEnd(fileName, RULES_EXTENSION));
+        return ParserRules.compile(name, ruleSet);
+    }
+}
@@ -0,0 +1,74 @@
+package com.utility.api.core.processor.rules;
+
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Rules chosen for a request, resolved once when the request is accepted so a reload of the registry while it waits
+ * neither changes nor removes them. A request whose locale is detected from the receipt holds the rules of every locale
+ * it may be detected as, and every image is parsed with those of the locale it was recognized with
+ */
+public final class ParserRuleSelection {
+
+    private static final int FINGERPRINT_LENGTH = 16;
+
+    private final Map<String, ParserRules> byLocale;
+    private final ParserRules fallback;
+    private final String fingerprint;
+
+    private ParserRuleSelection(Map<String, ParserRules> byLocale, ParserRules fallback) {
+        this.byLocale = byLocale;
+        this.fallback = fallback;
+        if (byLocale.isEmpty()) {
+            this.fingerprint = fallback.getFingerprint();
+        } else {
+            StringBuilder description = new StringBuilder(fallback.getFingerprint());
+            byLocale.forEach((locale, rules) -> description.append('\u0000').append(locale)
+                    .append('=').append(rules.getFingerprint()));
+            this.fingerprint = Hashing.sha256()
+                    .hashString(description, StandardCharsets.UTF_8)
+                    .toString().substring(0, FINGERPRINT_LENGTH);
+        }
+    }
+
+    /**
+     * @param rules     Rules every image is parsed with, whatever its locale
+     */
+    public static ParserRuleSelection of(ParserRules rules) {
+        return new ParserRuleSelection(Collections.emptyMap(), rules);
+    }
+
+    /**
+     * @param byLocale  Rules of every locale an image may be recognized with
+     * @param fallback  Rules of the images recognized with any other locale
+     */
+    public static ParserRuleSelection of(Map<String, ParserRules> byLocale, ParserRules fallback) {
+        return new ParserRuleSelection(Collections.unmodifiableMap(new TreeMap<>(byLocale)), fallback);
+    }
+
+    /**
+     * @param locale    Locale an image has been recognized with
+     *
+     * @return Rules to parse the lines of the image with
+     */
+    public ParserRules get(String locale) {
+        return byLocale.getOrDefault(locale, fallback);
+    }
+
+    /**
+     * @return Digest of every rule set an image may be parsed with, equal to the fingerprint of the rules when there is
+     *         a single one
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    @Override
+    public String toString() {
+        return byLocale.isEmpty() ? fallback.toString() : byLocale + " or " + fallback;
+    }
+}
@@ -0,0 +1,46 @@
+package com.utility.api.core.processor.rules;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Declarative rules parsing the lines of a store or locale, read from JSON. Null values stand for the defaults, which
+ * are the rules of Spanish receipts
+ *
+ *     {"name": "en", "locales": ["ENG"], "decimalSeparator": ".", "collapseDots": false,
+ *      "ignoredPrefixes": ["TOTAL", "SUBTOTAL", "TAX"]}
+ *
+ * Rule sets are compiled into {@link ParserRules} before being used
+ */
+@Data
+public class ParserRuleSet {
+
+    /** Name requests choose the rules by. Defaults to the name of the file holding them */
+    private String name;
+    /** Locales whose requests are parsed with these rules unless they ask for others */
+    private List<String> locales = new ArrayList<>();
+    /** Chars removed from the line before parsing it. Defaults to quotes, exclamation and question marks, accents and
+     * dashes */
+    private String removedChars;
+    /** If set to true " . " sequences are collapsed into a single space. Defaults to true */
+    private Boolean collapseDots;
+    /** Char separating the decimals of prices. Defaults to a comma */
+    private String decimalSeparator;
+    /** Number of decimals of prices, 1 to 3. Defaults to 2 */
+    private Integer decimals;
+    /** The name starts after the last number read before this many letters. Defaults to 2 */
+    private Integer nameLetters;
+    /** Digit group holding the quantity. Defaults to LAST */
+    private DigitGroup quantity;
+    /** Digit group holding the position. Defaults to FIRST */
+    private DigitGroup position;
+    /** Lines with a single price only keep their quantity when they have at least this many digit groups. Defaults
+     * to 3 */
+    private Integer singlePriceQuantityGroups;
+    /** Lines starting with any of these words or phrases, ignoring case, are dropped. So are those whose name starts
+     * with one, as in lines led by their position. Prefixes only match whole words, "TAX" doesn't drop "TAXI 2.00" */
+    private List<String> ignoredPrefixes = new ArrayList<>();
+
+}
@@ -0,0 +1,251 @@
+package com.utility.api.core.processor.rules;
+
+import com.google.common.hash.Hashing;
+import org.apache.commons.lang3.ObjectUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * A {@link ParserRuleSet} compiled into the form read by the line scanner on every char: defaults are resolved,
+ * removed chars become a lookup table and the scale of prices is computed once. Instances are immutable and shared by
+ * every thread
+ */
+public final class ParserRules {
+
+    /** Name of the built-in rules, the ones of Spanish receipts */
+    public static final String DEFAULT_NAME = "default";
+
+    private static final String DEFAULT_REMOVED_CHARS = "'\"!¡?¿´·-";
+    private static final char DEFAULT_DECIMAL_SEPARATOR = ',';
+    private static final int DEFAULT_DECIMALS = 2;
+    private static final int MAX_DECIMALS = 3;
+    private static final int DEFAULT_NAME_LETTERS = 2;
+    private static final int DEFAULT_SINGLE_PRICE_QUANTITY_GROUPS = 3;
+    private static final int FINGERPRINT_LENGTH = 16;
+
+    /** Rules used when a request doesn't choose any */
+    public static final ParserRules DEFAULT = compile(DEFAULT_NAME, new ParserRuleSet());
+
+    private final String name;
+    private final Set<String> locales;
+    private final String fingerprint;
+    private final boolean[] removed;
+    private final boolean collapseDots;
+    private final char decimalSeparator;
+    private final int decimals;
+    private final float decimalScale;
+    private final int nameLetters;
+    private final DigitGroup quantity;
+    private final DigitGroup position;
+    private final int singlePriceQuantityGroups;
+    private final String[] ignoredPrefixes;
+
+    private ParserRules(String name, ParserRuleSet ruleSet) {
+        this.name = name;
+        this.locales = Collections.unmodifiableSet(new LinkedHashSet<>(
+                ObjectUtils.defaultIfNull(ruleSet.getLocales(), Collections.emptyList())));
+        String removedChars = ObjectUtils.defaultIfNull(ruleSet.getRemovedChars(), DEFAULT_REMOVED_CHARS);
+        this.collapseDots = ObjectUtils.defaultIfNull(ruleSet.getCollapseDots(), Boolean.TRUE);
+        this.decimalSeparator = getSeparator(name, ruleSet.getDecimalSeparator());
+        this.decimals = ObjectUtils.defaultIfNull(ruleSet.getDecimals(), DEFAULT_DECIMALS);
+        this.nameLetters = ObjectUtils.defaultIfNull(ruleSet.getNameLetters(), DEFAULT_NAME_LETTERS);
+        this.quantity = ObjectUtils.defaultIfNull(ruleSet.getQuantity(), DigitGroup.LAST);
+        this.position = ObjectUtils.defaultIfNull(ruleSet.getPosition(), DigitGroup.FIRST);
+        this.singlePriceQuantityGroups = ObjectUtils.defaultIfNull(ruleSet.getSinglePriceQuantityGroups(),
+                DEFAULT_SINGLE_PRICE_QUANTITY_GROUPS);
+
+        if (decimals < 1 || decimals > MAX_DECIMALS) {
+            throw invalid(name, "decimals must be between 1 and " + MAX_DECIMALS);
+        }
+        if (nameLetters < 1) {
+            throw invalid(name, "nameLetters must be positive");
+        }
+        if (singlePriceQuantityGroups < 0) {
+            throw invalid(name, "singlePriceQuantityGroups cannot be negative");
+        }
+        this.decimalScale = (float) Math.pow(10, decimals);
+        this.removed = getRemovedTable(name, removedChars, decimalSeparator);
+        this.ignoredPrefixes = getIgnoredPrefixes(name, ruleSet.getIgnoredPrefixes());
+        this.fingerprint = Hashing.sha256()
+                .hashString(describe(removedChars), StandardCharsets.UTF_8)
+                .toString().substring(0, FINGERPRINT_LENGTH);
+    }
+
+    /**
+     * Compiles a rule set named by itself
+     *
+     * @throws IllegalArgumentException if the rule set has no name or any of its rules is not valid
+     */
+    public static ParserRules compile(ParserRuleSet ruleSet) {
+        return compile(ruleSet.getName(), ruleSet);
+    }
+
+    /**
+     * Compiles a rule set
+     *
+     * @param name      Name of the rules, used instead of the one of the rule set
+     * @param ruleSet   Rules to be compiled
+     *
+     * @return The compiled rules
+     *
+     * @throws IllegalArgumentException if the name is blank or any of the rules is not valid
+     */
+    public static ParserRules compile(String name, ParserRuleSet ruleSet) {
+        if (StringUtils.isBlank(name)) {
+            throw new IllegalArgumentException("Parser rules must have a name");
+        }
+        return new ParserRules(name, ruleSet);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return Locales parsed with these rules by default
+     */
+    public Set<String> getLocales() {
+        return locales;
+    }
+
+    /**
+     * @return Digest of the rules, equal for any two rule sets parsing every line the same way whatever their names
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @return True if the char is removed from lines before parsing them
+     */
+    public boolean isRemoved(char c) {
+        return c < removed.length && removed[c];
+    }
+
+    public boolean isCollapseDots() {
+        return collapseDots;
+    }
+
+    public char getDecimalSeparator() {
+        return decimalSeparator;
+    }
+
+    public int getDecimals() {
+        return decimals;
+    }
+
+    /**
+     * @return Ten raised to the number of decimals, the price a unit of the last decimal is divided by
+     */
+    public float getDecimalScale() {
+        return decimalScale;
+    }
+
+    public int getNameLetters() {
+        return nameLetters;
+    }
+
+    public DigitGroup getQuantity() {
+        return quantity;
+    }
+
+    public DigitGroup getPosition() {
+        return position;
+    }
+
+    public int getSinglePriceQuantityGroups() {
+        return singlePriceQuantityGroups;
+    }
+
+    /**
+     * @param chars     Buffer holding the text
+     * @param offset    Index of the first char of the text
+     * @param length    Number of chars of the text
+     *
+     * @return True if the text starts with any of the ignored prefixes as whole words, ignoring case. A prefix must be
+     *         followed by the end of the text or a char other than a letter, so "TAX" ignores "TAX 1,20" but not "TAXI"
+     */
+    public boolean isIgnored(char[] chars, int offset, int length) {
+        for (String prefix : ignoredPrefixes) {
+            if (startsWith(chars, offset, length, prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return name + '@' + fingerprint;
+    }
+
+    private static boolean startsWith(char[] chars, int offset, int length, String prefix) {
+        int prefixLength = prefix.length();
+        if (prefixLength > length) {
+            return false;
+        }
+        for (int i = 0; i < prefixLength; i++) {
+            if (Character.toUpperCase(chars[offset + i]) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return prefixLength == length || !Character.isLetter(chars[offset + prefixLength]);
+    }
+
+    private String describe(String removedChars) {
+        return String.join("\u0000", removedChars, String.valueOf(collapseDots), String.valueOf(decimalSeparator),
+                String.valueOf(decimals), String.valueOf(nameLetters), quantity.name(), position.name(),
+                String.valueOf(singlePriceQuantityGroups), String.join("\u0000", ignoredPrefixes));
+    }
+
+    private static char getSeparator(String name, String separator) {
+        if (separator == null) {
+            return DEFAULT_DECIMAL_SEPARATOR;
+        }
+        if (separator.length() != 1 || Character.isDigit(separator.charAt(0)) || separator.charAt(0) <= ' ') {
+            throw invalid(name, "decimalSeparator must be a single char other than a digit or a blank");
+        }
+        return separator.charAt(0);
+    }
+
+    private static boolean[] getRemovedTable(String name, String removedChars, char decimalSeparator) {
+        int size = 0;
+        for (int i = 0; i < removedChars.length(); i++) {
+            char c = removedChars.charAt(i);
+            if (Character.isDigit(c) || c == decimalSeparator) {
+                throw invalid(name, "removedChars cannot hold digits or the decimal separator");
+            }
+            size = Math.max(size, c + 1);
+        }
+        boolean[] table = new boolean[size];
+        for (int i = 0; i < removedChars.length(); i++) {
+            table[removedChars.charAt(i)] = true;
+        }
+        return table;
+    }
+
+    private static String[] getIgnoredPrefixes(String name, List<String> prefixes) {
+        List<String> result = new ArrayList<>();
+        if (prefixes == null) {
+            return new String[0];
+        }
+        for (String prefix : prefixes) {
+            if (StringUtils.isBlank(prefix)) {
+                throw invalid(name, "ignoredPrefixes cannot hold blank values");
+            }
+            result.add(prefix.toUpperCase(Locale.ROOT));
+        }
+        return result.toArray(new String[0]);
+    }
+
+    private static IllegalArgumentException invalid(String name, String message) {
+        return new IllegalArgumentException("Invalid parser rules " + name + ": " + message);
+    }
+}
@@ -0,0 +1,23 @@
+package com.utility.api.core.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Settings chosen by the client for a scan. Null values stand for the configured defaults
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScanOptions {
+
+    /** Name of the engine profile, see {@link com.utility.api.core.ocr.EngineProfile} */
+    private String profile;
+    /** Trained data locale, or {@link com.utility.api.core.ocr.OcrEngine#AUTO_LOCALE} to detect it */
+    private String locale;
+    /** Name of the parser rules, see {@link com.utility.api.core.processor.rules.ParserRuleRegistry}. Null for the
+     * rules of the locale, the detected one when it is detected */
+    private String rules;
+
+}
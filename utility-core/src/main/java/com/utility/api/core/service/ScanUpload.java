@@ -0,0 +1,23 @@
+package com.utility.api.core.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An image uploaded as part of a batch. Its size is known before its content is read, so a batch can be admitted or
+ * rejected without reading any image
+ */
+public interface ScanUpload {
+
+    /**
+     * @return Size of the content in bytes
+     */
+    long getSize();
+
+    /**
+     * @return A new stream over the content, to be closed by the caller
+     *
+     * @throws IOException if the content cannot be read
+     */
+    InputStream getInputStream() throws IOException;
+}
@@ -0,0 +1,23 @@
+package com.utility.api.core.service;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix="scanner")
+@Data
+public class ScannerProperties {
+
+    /** Maximum number of batch images waiting to be scanned on top of the ones being processed */
+    private Integer queueCapacity;
+    /** Maximum number of single scans accepted and not yet finished, their uploads wait on disk */
+    private Integer asyncQueueCapacity;
+    /** Number of threads running the scans. Defaults to the number of available processors */
+    private Integer computeThreads;
+    /** Seconds a finished batch job is kept available for polling */
+    private Long jobRetention;
+    /** Maximum size in bytes of an uploaded image, a negative value disables the limit */
+    private Long maxUploadSize;
+
+}
@@ -1,10 +1,108 @@
 package com.utility.api.core.service;
 
+import com.utility.api.core.ocr.exception.UploadTooLargeException;
+import com.utility.api.core.service.exception.InvalidScanRequestException;
+import com.utility.api.core.service.exception.ScanRejectedException;
+import com.utility.api.entity.ScanJob;
 import com.utility.api.entity.TicketLine;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 public interface StorageScannerService {
 
-    List<TicketLine> scan(byte[] image);
+    /**
+     * Recognizes the lines of an image. The content is read as a stream and never held on the heap as a whole. Lines of
+     * multi-page PDF and TIFF documents are returned in page order
+     *
+     * @param image     Image or document content
+     * @param options   Settings of the scan
+     *
+     * @return Lines found in the image, empty if the image cannot be recognized
+     *
+     * @throws UploadTooLargeException if the content is bigger than the maximum upload size
+     * @throws InvalidScanRequestException if the options name an unsupported locale, an unknown engine profile or
+     *         unknown parser rules
+     */
+    List<TicketLine> scan(InputStream image, ScanOptions options) throws UploadTooLargeException;
+
+    /**
+     * Recognizes the lines of an image handing each of them to the consumer as soon as it is found, instead of waiting
+     * for the whole image. Lines of documents are given page by page, in page order. If the image cannot be recognized
+     * the consumer simply gets no more lines
+     *
+     * @param image     Image or document content
+     * @param options   Settings of the scan
+     * @param consumer  Receives every line found, in reading order. Exceptions thrown by it are propagated as they are
+     *
+     * @throws UploadTooLargeException if the content is bigger than the maximum upload size
+     * @throws InvalidScanRequestException if the options name an unsupported locale, an unknown engine profile or
+     *         unknown parser rules
+     */
+    void scan(InputStream image, ScanOptions options, Consumer<TicketLine> consumer) throws UploadTooLargeException;
+
+    /**
+     * Queues an image to be scanned as {@link #scan(InputStream, ScanOptions)} does on the compute threads, so the
+     * calling thread is free right away. The service takes ownership of the stream and closes it once the scan is over
+     * or rejected. Cancelling the future of a scan still queued drops it and frees its place in the queue
+     *
+     * @param image     Image or document content
+     * @param options   Settings of the scan
+     *
+     * @return Completed with the lines found, or exceptionally with an {@link UploadTooLargeException}
+     *
+     * @throws ScanRejectedException if too many scans are already pending
+     * @throws InvalidScanRequestException if the options name an unsupported locale, an unknown engine profile or
+     *         unknown parser rules
+     */
+    CompletableFuture<List<TicketLine>> scanAsync(InputStream image, ScanOptions options)
+            throws ScanRejectedException;
+
+    /**
+     * Queues an image to be scanned as {@link #scan(InputStream, ScanOptions, Consumer)} does on the compute threads.
+     * The consumer is called from those threads. The service takes ownership of the stream and closes it once the scan
+     * is over or rejected. Cancelling the future drops a scan still queued and stops a running one before its next line
+     *
+     * @param image     Image or document content
+     * @param options   Settings of the scan
+     * @param consumer  Receives every line found, in reading order
+     *
+     * @return Completed once every line has been handed to the consumer, or exceptionally with the exception thrown by
+     *         the consumer or an {@link UploadTooLargeException}
+     *
+     * @throws ScanRejectedException if too many scans are already pending
+     * @throws InvalidScanRequestException if the options name an unsupported locale, an unknown engine profile or
+     *         unknown parser rules
+     */
+    CompletableFuture<Void> scanAsync(InputStream image, ScanOptions options, Consumer<TicketLine> consumer)
+            throws ScanRejectedException;
+
+    /**
+     * Queues a batch of images to be scanned in the background. The batch is checked and its room in the queue taken
+     * before any image is read, then every image is copied to a temporary file where it waits for its turn, so the
+     * uploads may be discarded once this method returns
+     *
+     * @param images    Every image of the batch
+     * @param options   Settings applied to every image
+     *
+     * @return The newly created job, to be polled using {@link #getJob(String)}
+     *
+     * @throws ScanRejectedException if there is no room left in the queue for the whole batch
+     * @throws UploadTooLargeException if any of the images is bigger than the maximum upload size
+     * @throws InvalidScanRequestException if the batch is empty or bigger than the queue itself, or the options name
+     *         an unsupported locale, an unknown engine profile or unknown parser rules
+     * @throws IOException if any of the images cannot be read or copied
+     */
+    ScanJob submit(List<? extends ScanUpload> images, ScanOptions options)
+            throws ScanRejectedException, UploadTooLargeException, IOException;
+
+    /**
+     * @param id    Job identifier returned by {@link #submit(List, ScanOptions)}
+     *
+     * @return The current progress of the job, or null if no such job exists or it has already expired
+     */
+    ScanJob getJob(String id);
 }
@@ -0,0 +1,16 @@
+package com.utility.api.core.service.exception;
+
+/**
+ * Thrown when the options or the images of a scan request are not valid, so the request can be told apart from any
+ * other illegal argument and reported as a bad request
+ */
+public class InvalidScanRequestException extends IllegalArgumentException {
+
+    public InvalidScanRequestException(String message) {
+        super(message);
+    }
+
+    public InvalidScanRequestException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
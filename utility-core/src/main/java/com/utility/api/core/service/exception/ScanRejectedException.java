@@ -0,0 +1,19 @@
+package com.utility.api.core.service.exception;
+
+public class ScanRejectedException extends Exception {
+
+    private final long retryAfter;
+
+    /**
+     * @param message       Reason for the rejection
+     * @param retryAfter    Estimated number of seconds until there is room for the request
+     */
+    public ScanRejectedException(String message, long retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public long getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,95 @@
+package com.utility.api.core.service.impl;
+
+import com.utility.api.entity.ScanJob;
+import com.utility.api.entity.ScanResult;
+import com.utility.api.entity.ScanStatus;
+import com.utility.api.entity.TicketLine;
+import com.utility.api.entity.TicketLineBatch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Progress of a batch of images scanned in the background. Results are written by the worker threads and read by the
+ * threads polling for the job, one slot per image. Lines are kept as a {@link TicketLineBatch} while the job is retained
+ * and only materialized when a snapshot is serialized
+ */
+class BatchJob {
+
+    private final String id;
+    private final AtomicReferenceArray<ScanResult> results;
+    private final AtomicInteger completed = new AtomicInteger();
+
+    private volatile long finishedAt;
+
+    BatchJob(String id, int size) {
+        this.id = id;
+        this.results = new AtomicReferenceArray<>(size);
+        for (int i = 0; i < size; i++) {
+            results.set(i, new ScanResult(i, ScanStatus.QUEUED, null));
+        }
+    }
+
+    String getId() {
+        return id;
+    }
+
+    void started(int index) {
+        results.set(index, new ScanResult(index, ScanStatus.RUNNING, null));
+    }
+
+    void completed(int index, List<TicketLine> lines) {
+        finish(index, new ScanResult(index, ScanStatus.COMPLETED, TicketLineBatch.of(lines).asList()));
+    }
+
+    void failed(int index) {
+        finish(index, new ScanResult(index, ScanStatus.FAILED, null));
+    }
+
+    /**
+     * @return True once every image has been processed
+     */
+    boolean isFinished() {
+        return completed.get() == results.length();
+    }
+
+    /**
+     * @return Epoch millis when the last image was processed, 0 while the job is still running
+     */
+    long getFinishedAt() {
+        return finishedAt;
+    }
+
+    /**
+     * Builds a snapshot of the job progress
+     */
+    ScanJob toScanJob() {
+        int total = results.length();
+        List<ScanResult> snapshot = new ArrayList<>(total);
+        boolean running = false, failed = false;
+
+        for (int i = 0; i < total; i++) {
+            ScanResult result = results.get(i);
+            snapshot.add(result);
+            running |= result.getStatus() != ScanStatus.QUEUED;
+            failed |= result.getStatus() == ScanStatus.FAILED;
+        }
+        int done = completed.get();
+        ScanStatus status;
+        if (done == total) {
+            status = failed ? ScanStatus.FAILED : ScanStatus.COMPLETED;
+        } else {
+            status = running ? ScanStatus.RUNNING : ScanStatus.QUEUED;
+        }
+        return new ScanJob(id, status, total, done, snapshot);
+    }
+
+    private void finish(int index, ScanResult result) {
+        results.set(index, result);
+        if (completed.incrementAndGet() == results.length()) {
+            finishedAt = System.currentTimeMillis();
+        }
+    }
+}
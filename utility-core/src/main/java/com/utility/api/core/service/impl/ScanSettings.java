@@ -0,0 +1,38 @@
+package com.utility.api.core.service.impl;
+
+import com.utility.api.core.processor.rules.ParserRuleSelection;
+
+/**
+ * {@link com.utility.api.core.service.ScanOptions} resolved when a scan is accepted: defaults are applied and the parser
+ * rules are looked up, so the scan runs with the rules it was accepted with even if they are reloaded while it waits
+ */
+class ScanSettings {
+
+    private final String locale;
+    private final String profile;
+    private final ParserRuleSelection rules;
+
+    ScanSettings(String locale, String profile, ParserRuleSelection rules) {
+        this.locale = locale;
+        this.profile = profile;
+        this.rules = rules;
+    }
+
+    /**
+     * @return A supported locale or {@link com.utility.api.core.ocr.OcrEngine#AUTO_LOCALE}
+     */
+    String getLocale() {
+        return locale;
+    }
+
+    /**
+     * @return Name of an existing engine profile
+     */
+    String getProfile() {
+        return profile;
+    }
+
+    ParserRuleSelection getRules() {
+        return rules;
+    }
+}
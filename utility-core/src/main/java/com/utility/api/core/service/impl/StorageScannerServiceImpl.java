@@ -1,40 +1,652 @@
 package com.utility.api.core.service.impl;
 
+import com.utility.api.core.cache.CachedScan;
+import com.utility.api.core.cache.ScanResultCache;
+import com.utility.api.core.cache.SimilarScanIndex;
+import com.utility.api.core.metrics.PipelineMetrics;
 import com.utility.api.core.ocr.OcrEngine;
+import com.utility.api.core.ocr.document.DocumentReader;
+import com.utility.api.core.ocr.document.ScannedDocument;
 import com.utility.api.core.ocr.exception.OcrException;
+import com.utility.api.core.ocr.exception.UploadTooLargeException;
+import com.utility.api.core.ocr.utils.FileUtils;
+import com.utility.api.core.ocr.utils.ScanInputStream;
+import com.utility.api.core.ocr.utils.SupportedMimeType;
 import com.utility.api.core.processor.ProcessContext;
 import com.utility.api.core.processor.RegisterProcessor;
+import com.utility.api.core.processor.rules.ParserRuleRegistry;
+import com.utility.api.core.processor.rules.ParserRuleSelection;
+import com.utility.api.core.processor.rules.ParserRules;
+import com.utility.api.core.service.ScanOptions;
+import com.utility.api.core.service.ScanUpload;
+import com.utility.api.core.service.ScannerProperties;
 import com.utility.api.core.service.StorageScannerService;
+import com.utility.api.core.service.exception.InvalidScanRequestException;
+import com.utility.api.core.service.exception.ScanRejectedException;
+import com.utility.api.entity.ScanJob;
 import com.utility.api.entity.TicketLine;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.log4j.Log4j;
+import org.apache.commons.lang3.ObjectUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PreDestroy;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 @Service
 @Log4j
 public class StorageScannerServiceImpl implements StorageScannerService{
 
+    private static final int DEFAULT_QUEUE_CAPACITY = 100;
+    private static final int DEFAULT_ASYNC_QUEUE_CAPACITY = 1000;
+    private static final long DEFAULT_JOB_RETENTION = 3600L;
+    private static final long MIN_PRUNE_PERIOD = TimeUnit.SECONDS.toMillis(1);
+    private static final long MAX_PRUNE_PERIOD = TimeUnit.MINUTES.toMillis(1);
+    private static final long DEFAULT_MAX_UPLOAD_SIZE = 20L * 1024 * 1024;
+    // Initial guess of the time needed to scan an image, used for retry hints until real timings are available
+    private static final long INITIAL_SCAN_MILLIS = 2000L;
+
     private final OcrEngine ocrEngine;
     private final RegisterProcessor<TicketLine> processor;
+    private final ParserRuleRegistry parserRules;
+    private final ScanResultCache cache;
+    private final SimilarScanIndex similarScans;
+    private final DocumentReader documentReader;
+    private final ExecutorService executor;
+    // Page workers of every engine profile, as many as its engines
+    private final Map<String, ExecutorService> pageExecutors = new HashMap<>();
+    private final Semaphore slots;
+    private final Semaphore pending;
+    private final int computeThreads;
+    private final int maxBatchSize;
+    private final long jobRetention;
+    private final long maxUploadSize;
+    private final Map<String, BatchJob> jobs = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService pruner;
+    private final AtomicLong averageScanMillis = new AtomicLong(INITIAL_SCAN_MILLIS);
 
     @Autowired
-    public StorageScannerServiceImpl(OcrEngine ocrEngine, RegisterProcessor<TicketLine> processor) {
+    public StorageScannerServiceImpl(OcrEngine ocrEngine, RegisterProcessor<TicketLine> processor,
+                                     ParserRuleRegistry parserRules, ScanResultCache cache,
+                                     SimilarScanIndex similarScans, DocumentReader documentReader,
+                                     ScannerProperties properties) {
         this.ocrEngine = ocrEngine;
         this.processor = processor;
+        this.parserRules = parserRules;
+        this.cache = cache;
+        this.similarScans = similarScans;
+        this.documentReader = documentReader;
+        this.computeThreads = ObjectUtils.defaultIfNull(properties.getComputeThreads(),
+                Runtime.getRuntime().availableProcessors());
+        this.jobRetention = TimeUnit.SECONDS.toMillis(
+                ObjectUtils.defaultIfNull(properties.getJobRetention(), DEFAULT_JOB_RETENTION));
+        this.maxUploadSize = ObjectUtils.defaultIfNull(properties.getMaxUploadSize(), DEFAULT_MAX_UPLOAD_SIZE);
+        this.maxBatchSize = computeThreads
+                + ObjectUtils.defaultIfNull(properties.getQueueCapacity(), DEFAULT_QUEUE_CAPACITY);
+        this.slots = new Semaphore(maxBatchSize);
+        this.pending = new Semaphore(computeThreads
+                + ObjectUtils.defaultIfNull(properties.getAsyncQueueCapacity(), DEFAULT_ASYNC_QUEUE_CAPACITY));
+        this.executor = createExecutor("scan-worker-", computeThreads);
+        for (String profile : ocrEngine.getProfiles()) {
+            pageExecutors.put(profile, createExecutor("page-worker-" + profile + "-", ocrEngine.getPoolSize(profile)));
+        }
+
+        // Jobs nobody polls anymore are dropped even if no other batch is submitted
+        long period = Math.max(Math.min(jobRetention, MAX_PRUNE_PERIOD), MIN_PRUNE_PERIOD);
+        this.pruner = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "scan-job-pruner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        pruner.scheduleAtFixedRate(this::removeExpiredJobs, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pruner.shutdownNow();
+        executor.shutdownNow();
+        pageExecutors.values().forEach(ExecutorService::shutdownNow);
     }
 
     @Override
-    public List<TicketLine> scan(byte[] image) {
-        try {
-            String data = ocrEngine.readImage(image);
+    public List<TicketLine> scan(InputStream image, ScanOptions options) throws UploadTooLargeException {
+        return scan(image, resolve(options));
+    }
 
-            return processor.processList(new ProcessContext(data));
-        } catch (OcrException e) {
+    @Override
+    public void scan(InputStream image, ScanOptions options, Consumer<TicketLine> consumer)
+            throws UploadTooLargeException {
+        scan(image, resolve(options), consumer);
+    }
+
+    private List<TicketLine> scan(InputStream image, ScanSettings resolved) throws UploadTooLargeException {
+        try {
+            return read(image, resolved, line -> { });
+        } catch (UploadTooLargeException e) {
+            throw e;
+        } catch (OcrException | IOException e) {
             log.error("Could not read image", e);
         }
         return new ArrayList<>(0);
     }
+
+    private void scan(InputStream image, ScanSettings resolved, Consumer<TicketLine> consumer)
+            throws UploadTooLargeException {
+        Timer.Sample sample = PipelineMetrics.start();
+        boolean[] first = {true};
+        try {
+            read(image, resolved, line -> {
+                if (first[0]) {
+                    first[0] = false;
+                    PipelineMetrics.stop(sample, "first_line");
+                }
+                consumer.accept(line);
+            });
+        } catch (UploadTooLargeException e) {
+            throw e;
+        } catch (OcrException | IOException e) {
+            log.error("Could not read image", e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<List<TicketLine>> scanAsync(InputStream image, ScanOptions options)
+            throws ScanRejectedException {
+        ScanSettings resolved = resolveOrClose(image, options);
+        CompletableFuture<List<TicketLine>> future = new CompletableFuture<>();
+        runAsync(image, future, () -> scan(image, resolved));
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<Void> scanAsync(InputStream image, ScanOptions options, Consumer<TicketLine> consumer)
+            throws ScanRejectedException {
+        ScanSettings resolved = resolveOrClose(image, options);
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        runAsync(image, future, () -> {
+            scan(image, resolved, line -> {
+                // The client is gone, stop scanning at the next line rather than recognizing the rest of the image
+                if (future.isCancelled()) {
+                    throw new CancellationException("Scan cancelled");
+                }
+                consumer.accept(line);
+            });
+            return null;
+        });
+        return future;
+    }
+
+    @Override
+    public ScanJob submit(List<? extends ScanUpload> images, ScanOptions options)
+            throws ScanRejectedException, UploadTooLargeException, IOException {
+        ScanSettings resolved = resolve(options);
+        int size = images.size();
+        if (size == 0) {
+            throw new InvalidScanRequestException("A batch must hold at least one image");
+        }
+        if (size > maxBatchSize) {
+            throw new InvalidScanRequestException("A batch cannot hold more than " + maxBatchSize + " images");
+        }
+        for (ScanUpload image : images) {
+            if (maxUploadSize >= 0 && image.getSize() > maxUploadSize) {
+                throw new UploadTooLargeException("Upload exceeds the maximum size of " + maxUploadSize + " bytes");
+            }
+        }
+        if (!slots.tryAcquire(size)) {
+            throw new ScanRejectedException("Scan queue is full", getRetryAfter(slots, size));
+        }
+        List<File> files = spool(images, size);
+
+        BatchJob job = new BatchJob(UUID.randomUUID().toString(), size);
+        jobs.put(job.getId(), job);
+        int submitted = 0;
+        try {
+            for (; submitted < size; submitted++) {
+                int index = submitted;
+                File file = files.get(index);
+                executor.execute(() -> scan(job, index, file, resolved));
+            }
+        } catch (RejectedExecutionException e) {
+            // Images never queued give back their slots and files, the queued ones release theirs when scanned
+            slots.release(size - submitted);
+            files.subList(submitted, size).forEach(FileUtils::deleteTemporaryFile);
+            if (submitted == 0) {
+                jobs.remove(job.getId());
+                throw new ScanRejectedException("Scanner is shutting down", getRetryAfter(slots, size));
+            }
+            log.warn("Scanner is shutting down, " + (size - submitted) + " images of job " + job.getId()
+                    + " were not queued");
+            for (int i = submitted; i < size; i++) {
+                job.failed(i);
+            }
+        }
+        return job.toScanJob();
+    }
+
+    /**
+     * Copies the images of an admitted batch to temporary files, since the uploads are gone once the request ends. The
+     * images wait for their turn on disk rather than on the heap
+     *
+     * @throws IOException if any image cannot be copied, in which case no file is left and the slots are released
+     */
+    private List<File> spool(List<? extends ScanUpload> images, int size) throws IOException {
+        List<File> files = new ArrayList<>(size);
+        try {
+            for (ScanUpload image : images) {
+                try (InputStream input = image.getInputStream()) {
+                    files.add(FileUtils.spool(input));
+                }
+            }
+            return files;
+        } catch (IOException | RuntimeException e) {
+            files.forEach(FileUtils::deleteTemporaryFile);
+            slots.release(size);
+            throw e;
+        }
+    }
+
+    @Override
+    public ScanJob getJob(String id) {
+        BatchJob job = jobs.get(id);
+        return job != null ? job.toScanJob() : null;
+    }
+
+    /**
+     * Runs a scan on the compute threads. Only scans holding a pending permit are queued, so the number of uploads
+     * waiting is bounded while no thread waits for them. The stream is closed whatever the outcome.
+     * A scan whose future is cancelled while it is queued gives its permit back and closes its stream right away, and
+     * is skipped once it reaches a compute thread. Whichever of both comes first releases them, only once
+     *
+     * @param future    Completed with the result of the task, cancelled by the caller once the result is not wanted
+     *
+     * @throws ScanRejectedException if there is no pending permit left
+     */
+    private <T> void runAsync(InputStream image, CompletableFuture<T> future, Callable<T> task)
+            throws ScanRejectedException {
+        if (!pending.tryAcquire()) {
+            close(image);
+            throw new ScanRejectedException("Scan queue is full", getRetryAfter(pending, 1));
+        }
+        AtomicBoolean started = new AtomicBoolean();
+        future.whenComplete((result, e) -> {
+            if (future.isCancelled() && started.compareAndSet(false, true)) {
+                pending.release();
+                close(image);
+            }
+        });
+        try {
+            executor.execute(() -> {
+                if (!started.compareAndSet(false, true)) {
+                    return;
+                }
+                long start = System.currentTimeMillis();
+                try {
+                    future.complete(task.call());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    pending.release();
+                    close(image);
+                    updateAverage(System.currentTimeMillis() - start);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            if (started.compareAndSet(false, true)) {
+                pending.release();
+                close(image);
+            }
+            throw new ScanRejectedException("Scanner is shutting down", getRetryAfter(pending, 1));
+        }
+    }
+
+    private ScanSettings resolveOrClose(InputStream image, ScanOptions options) {
+        try {
+            return resolve(options);
+        } catch (InvalidScanRequestException e) {
+            close(image);
+            throw e;
+        }
+    }
+
+    private static void close(InputStream image) {
+        try {
+            image.close();
+        } catch (IOException e) {
+            log.debug("Could not close scanned content", e);
+        }
+    }
+
+    /**
+     * Recognizes and parses the lines of an image, unless the same image has already been scanned and is still cached.
+     * The content is decoded while it is read, so it never sits on the heap as a whole. Its digest is only known once
+     * it has been read, therefore the cache is looked up after decoding and saves the processing and recognition.
+     * Failing that, the lines of a cached photo of the same receipt are reused when near duplicates are looked for,
+     * see {@link SimilarScanIndex}.
+     * Every text line is parsed as soon as the engine gives it, with the rules of the locale it is recognized with, and
+     * the lines found are handed to the consumer right away. Multi-page documents are read by
+     * {@link #readDocument(ScanInputStream, SupportedMimeType, ScanSettings, Consumer)}
+     *
+     * @param image     Image or document content
+     * @param settings  Locale, engine profile and parser rules to scan the image with
+     * @param consumer  Receives every line found, in reading order
+     *
+     * @return Lines found in the image
+     *
+     * @throws OcrException if the image cannot be recognized
+     * @throws UploadTooLargeException if the content is bigger than the maximum upload size
+     * @throws IOException if the content cannot be read or decoded
+     */
+    private List<TicketLine> read(InputStream image, ScanSettings settings, Consumer<TicketLine> consumer)
+            throws OcrException, IOException {
+        try (ScanInputStream input = new ScanInputStream(image, maxUploadSize)) {
+            SupportedMimeType mime = ocrEngine.getMimeType(input);
+            if (mime.isDocument()) {
+                return readDocument(input, mime, settings, consumer);
+            }
+            BufferedImage decoded;
+            try {
+                decoded = ocrEngine.decode(input);
+                input.drain();
+                PipelineMetrics.bytes("in", input.getBytesRead());
+            } catch (IOException e) {
+                throw checkLimit(input, e);
+            }
+            String key = getKey(input.getDigest(), settings);
+            CachedScan cached = cache.get(key);
+            long hash = 0;
+            float aspect = SimilarScanIndex.getAspectRatio(decoded.getWidth(), decoded.getHeight());
+            String context = similarScans.getContext(settings.getLocale(), settings.getProfile(),
+                    settings.getRules().getFingerprint());
+            if (cached == null && similarScans.isEnabled()) {
+                // Not stored under the digest of this image, a similar hit must never become an exact one
+                hash = ocrEngine.getPerceptualHash(decoded);
+                cached = findSimilar(hash, aspect, context, settings);
+            }
+            if (cached != null) {
+                cached.getLines().forEach(consumer);
+                return cached.getLines();
+            }
+            StringBuilder data = new StringBuilder();
+            List<TicketLine> lines = new ArrayList<>();
+            ParserRules[] rules = {null};
+            ocrEngine.readLines(decoded, settings.getLocale(), settings.getProfile(),
+                    recognized -> rules[0] = settings.getRules().get(recognized), text -> {
+                data.append(text).append('\n');
+                TicketLine line = parseLine(text, rules[0]);
+                if (line != null) {
+                    lines.add(line);
+                    consumer.accept(line);
+                }
+            });
+            cache.put(key, new CachedScan(data.toString(), lines));
+            similarScans.add(hash, aspect, context, input.getDigest());
+
+            return lines;
+        }
+    }
+
+    /**
+     * Looks up the cached lines of the closest image to a perceptual hash with a similar aspect ratio. Images whose
+     * lines are no longer cached don't match
+     */
+    private CachedScan findSimilar(long hash, float aspect, String context, ScanSettings settings) {
+        byte[] digest = similarScans.find(hash, aspect, context);
+        if (digest == null) {
+            return null;
+        }
+        return cache.get(getKey(digest, settings));
+    }
+
+    /**
+     * The key holds the locale asked for rather than the detected one, which is only known after the recognition, and
+     * the fingerprint of every rule set the lines may be parsed with
+     */
+    private String getKey(byte[] digest, ScanSettings settings) {
+        return cache.getKey(digest, settings.getLocale(), settings.getProfile(), settings.getRules().getFingerprint());
+    }
+
+    /**
+     * Recognizes the lines of a multi-page document. The content is spooled to a temporary file while its digest is
+     * computed, then pages are rasterized one at a time and recognized in parallel. No more pages than OCR engines of
+     * the profile are kept in memory at once. Lines are merged in page order and handed to the consumer as soon as
+     * every previous page is done
+     *
+     * @param input     Document content
+     * @param mime      Type of the document
+     * @param settings  Locale, engine profile and parser rules to scan the pages with, each page being parsed with the
+     *                  rules of the locale it is recognized with
+     * @param consumer  Receives every line found, in page order
+     *
+     * @return Lines found in every page
+     */
+    private List<TicketLine> readDocument(ScanInputStream input, SupportedMimeType mime, ScanSettings settings,
+                                          Consumer<TicketLine> consumer)
+            throws OcrException, IOException {
+        File file = null;
+        try {
+            try {
+                file = FileUtils.spool(input);
+                PipelineMetrics.bytes("in", input.getBytesRead());
+            } catch (IOException e) {
+                throw checkLimit(input, e);
+            }
+            String key = getKey(input.getDigest(), settings);
+            CachedScan cached = cache.get(key);
+            if (cached != null) {
+                cached.getLines().forEach(consumer);
+                return cached.getLines();
+            }
+            CachedScan scan;
+            try (ScannedDocument document = documentReader.open(file, mime)) {
+                scan = readPages(document, settings, consumer);
+            }
+            cache.put(key, scan);
+
+            return scan.getLines();
+        } finally {
+            FileUtils.deleteTemporaryFile(file);
+        }
+    }
+
+    private CachedScan readPages(ScannedDocument document, ScanSettings settings, Consumer<TicketLine> consumer)
+            throws OcrException, IOException {
+        int pages = document.getPageCount();
+        // All the pages borrow from the engines of the same profile, rendering more of them would only make them wait
+        int workers = ocrEngine.getPoolSize(settings.getProfile());
+        ExecutorService pageExecutor = pageExecutors.get(settings.getProfile());
+        List<Future<ProcessContext>> texts = new ArrayList<>(pages);
+        StringBuilder data = new StringBuilder();
+        List<TicketLine> lines = new ArrayList<>();
+        int next = 0;
+        try {
+            for (int i = 0; i < pages; i++) {
+                if (i - next >= workers) {
+                    // Wait for a page to be recognized before rendering another one
+                    parsePage(getRecognized(texts.get(next++)), data, lines, consumer);
+                }
+                BufferedImage page = document.getPage(i);
+                texts.add(pageExecutor.submit(() -> readPage(page, settings)));
+            }
+            while (next < pages) {
+                parsePage(getRecognized(texts.get(next++)), data, lines, consumer);
+            }
+            return new CachedScan(data.toString(), lines);
+        } finally {
+            texts.forEach(future -> future.cancel(true));
+        }
+    }
+
+    /**
+     * Recognizes a page of a document
+     *
+     * @return Text of the page along with the rules of the locale it has been recognized with
+     */
+    private ProcessContext readPage(BufferedImage page, ScanSettings settings) throws OcrException {
+        ParserRules[] rules = {null};
+        String text = ocrEngine.readImage(page, settings.getLocale(), settings.getProfile(),
+                recognized -> rules[0] = settings.getRules().get(recognized));
+        return new ProcessContext(text, rules[0]);
+    }
+
+    /**
+     * Parses the text of a page line by line, like the lines of an image, so a line failing to parse doesn't lose the
+     * rest of the page
+     */
+    private void parsePage(ProcessContext page, StringBuilder data, List<TicketLine> lines,
+                           Consumer<TicketLine> consumer) {
+        String text = page.getRawData();
+        data.append(text).append('\n');
+        for (String row : StringUtils.splitPreserveAllTokens(text, '\n')) {
+            TicketLine line = parseLine(row, page.getRules());
+            if (line != null) {
+                lines.add(line);
+                consumer.accept(line);
+            }
+        }
+    }
+
+    /**
+     * Parses a single line of text. A line the parser fails on is counted as a parse error and skipped, it must not end
+     * the scan of the whole image
+     *
+     * @return The line found or null if there is none or the parser failed
+     */
+    private TicketLine parseLine(String text, ParserRules rules) {
+        try {
+            return processor.processSingle(new ProcessContext(text, rules));
+        } catch (RuntimeException e) {
+            PipelineMetrics.error("parse", e);
+            log.debug("Could not parse line " + text, e);
+            return null;
+        }
+    }
+
+    private static ProcessContext getRecognized(Future<ProcessContext> future) throws OcrException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OcrException("Interrupted while recognizing a page", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof OcrException) {
+                throw (OcrException) e.getCause();
+            }
+            throw new OcrException("Could not recognize page", e.getCause());
+        }
+    }
+
+    /**
+     * Decoders may wrap the exception thrown when the upload is too large, so the stream is checked after a failure
+     */
+    private IOException checkLimit(ScanInputStream input, IOException e) {
+        if (input.isLimitExceeded()) {
+            return new UploadTooLargeException("Upload exceeds the maximum size of " + maxUploadSize + " bytes");
+        }
+        return e;
+    }
+
+    /**
+     * Scans a single image of a batch job. The queue slot held by the image is released and its temporary file deleted
+     * once it has been processed
+     */
+    private void scan(BatchJob job, int index, File image, ScanSettings settings) {
+        long start = System.currentTimeMillis();
+        try (InputStream input = new FileInputStream(image)) {
+            job.started(index);
+            job.completed(index, read(input, settings, line -> { }));
+        } catch (Exception e) {
+            log.error("Could not scan image " + index + " of job " + job.getId(), e);
+            job.failed(index);
+        } finally {
+            FileUtils.deleteTemporaryFile(image);
+            slots.release();
+            updateAverage(System.currentTimeMillis() - start);
+        }
+    }
+
+    private void updateAverage(long elapsed) {
+        // Exponential moving average so the retry hint follows the recent load
+        averageScanMillis.updateAndGet(average -> (average * 7 + elapsed) / 8);
+    }
+
+    /**
+     * Resolves the locale, engine profile and parser rules asked for by the client, so defaults are part of the cache
+     * key. Rules are looked up once, when the scan is accepted, so a reload while it waits doesn't change or remove
+     * them. Scans whose locale is detected get the rules of every locale it may be detected as
+     *
+     * @throws InvalidScanRequestException if the locale is not supported or no profile or parser rules have the given
+     *         name
+     */
+    private ScanSettings resolve(ScanOptions options) {
+        ScanOptions requested = ObjectUtils.defaultIfNull(options, new ScanOptions());
+        try {
+            String locale = ocrEngine.getLocale(requested.getLocale());
+            ParserRuleSelection rules = OcrEngine.AUTO_LOCALE.equals(locale)
+                    ? parserRules.getDetectedRules(requested.getRules(), ocrEngine.getDetectableLocales())
+                    : ParserRuleSelection.of(parserRules.getRules(requested.getRules(), locale));
+            return new ScanSettings(locale, ocrEngine.getProfile(requested.getProfile()), rules);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidScanRequestException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Estimates the number of seconds until a queue has enough free permits for the given number of images
+     */
+    private long getRetryAfter(Semaphore queue, int size) {
+        int busy = Math.max(size - queue.availablePermits(), 1);
+        long millis = (long) Math.ceil((double) busy / computeThreads) * averageScanMillis.get();
+
+        return Math.max(1L, TimeUnit.MILLISECONDS.toSeconds(millis));
+    }
+
+    private void removeExpiredJobs() {
+        long limit = System.currentTimeMillis() - jobRetention;
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt() < limit);
+    }
+
+    /**
+     * Creates an executor with a fixed number of workers. Scan workers are the compute threads, as many as cores by
+     * default and so no more than the engines of a profile, which means they don't wait for an engine. Page workers of
+     * a profile match its engines. The work queue itself is unbounded, the number of queued images is limited by the
+     * permits acquired on submission and the number of queued pages by the document reading
+     */
+    private static ExecutorService createExecutor(String name, int workers) {
+        AtomicInteger count = new AtomicInteger();
+        return new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, name + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
 }
@@ -0,0 +1,159 @@
+package com.utility.api.core.tools;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Memory-mapped file of raw OCR texts, one record per receipt separated by form feeds ({@code \f}). The file is read as
+ * consecutive windows of records, each one mapping only the region it covers, so files of any size are read without
+ * copying them onto the heap. The separator never appears inside a UTF-8 multi-byte sequence, records are found
+ * without decoding
+ */
+class RecordFile implements Closeable {
+
+    static final byte SEPARATOR = '\f';
+
+    private final FileChannel channel;
+    private final long size;
+    private final int maxRegion;
+    private long position;
+    private long nextRecord;
+
+    /**
+     * @param file          File to be read
+     * @param maxRegion     Maximum number of bytes mapped by a window, no record may be longer
+     */
+    RecordFile(File file, int maxRegion) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        this.size = channel.size();
+        this.maxRegion = maxRegion;
+    }
+
+    /**
+     * @return Size of the file in bytes
+     */
+    long getSize() {
+        return size;
+    }
+
+    /**
+     * Maps the next records of the file
+     *
+     * @param maxRecords    Maximum number of records of the window
+     *
+     * @return The next window or null once the whole file has been read
+     *
+     * @throws IOException if a record doesn't fit into a region or the file cannot be mapped
+     */
+    Window next(int maxRecords) throws IOException {
+        if (position >= size) {
+            return null;
+        }
+        long length = Math.min(size - position, maxRegion);
+        boolean last = position + length == size;
+        MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+        int[] starts = new int[Math.min(maxRecords, 1024)];
+        int[] ends = new int[starts.length];
+        int count = 0;
+        int start = 0;
+        int limit = (int) length;
+        for (int i = 0; i < limit && count < maxRecords; i++) {
+            if (region.get(i) == SEPARATOR) {
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, count * 2);
+                    ends = Arrays.copyOf(ends, count * 2);
+                }
+                starts[count] = start;
+                ends[count++] = i;
+                start = i + 1;
+            }
+        }
+        if (last && count < maxRecords && start < limit) {
+            // The last record of the file needs no separator
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count + 1);
+                ends = Arrays.copyOf(ends, count + 1);
+            }
+            starts[count] = start;
+            ends[count++] = limit;
+            start = limit;
+        }
+        if (count == 0 && start < limit) {
+            throw new IOException("Record " + nextRecord + " is longer than " + maxRegion + " bytes");
+        }
+        Window window = new Window(region, starts, ends, count, nextRecord, start);
+        position += start;
+        nextRecord += count;
+
+        return window;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Consecutive records held by a mapped region. Records may be decoded from several threads at once
+     */
+    static class Window {
+
+        private final ByteBuffer region;
+        private final int[] starts;
+        private final int[] ends;
+        private final int count;
+        private final long firstRecord;
+        private final long bytes;
+
+        private Window(ByteBuffer region, int[] starts, int[] ends, int count, long firstRecord, long bytes) {
+            this.region = region;
+            this.starts = starts;
+            this.ends = ends;
+            this.count = count;
+            this.firstRecord = firstRecord;
+            this.bytes = bytes;
+        }
+
+        /**
+         * @return Number of records of the window
+         */
+        int getCount() {
+            return count;
+        }
+
+        /**
+         * @return Number of the first record of the window within the file
+         */
+        long getFirstRecord() {
+            return firstRecord;
+        }
+
+        /**
+         * @return Number of bytes covered by the window, separators included
+         */
+        long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * Decodes a record of the window
+         *
+         * @param index     Index of the record within the window
+         *
+         * @return Text of the record
+         */
+        String getText(int index) {
+            ByteBuffer record = region.duplicate();
+            record.limit(ends[index]).position(starts[index]);
+            return StandardCharsets.UTF_8.decode(record).toString();
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package com.utility.api.core.tools;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.utility.api.core.processor.ProcessContext;
+import com.utility.api.core.processor.impl.TicketLineProcessor;
+import com.utility.api.core.processor.rules.ParserRuleSet;
+import com.utility.api.core.processor.rules.ParserRules;
+import com.utility.api.entity.TicketLineBatch;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs stored raw OCR texts through {@link TicketLineProcessor} again without recognizing any image, so changes to the
+ * parsing rules can be applied to past scans and compared with their previous results.
+ *
+ * The input is read through a {@link RecordFile}: one record per receipt, separated by form feeds. Records are parsed a
+ * window at a time, splitting every window across the cores with fork/join, and written in input order as JSON lines
+ *
+ *     {"record":0,"lines":[{"name":"PAN","quantity":1,"price":0.85,"position":null}]}
+ *
+ * When the output of a previous run is given every record is compared with it. Throughput and changes are printed once
+ * the whole input has been parsed. Records are parsed with the default rules unless a rule set file is given, so new
+ * rules can be tried against past scans before being deployed
+ *
+ *     java -cp ... com.utility.api.core.tools.ReparseTool input.txt output.ndjson [previous.ndjson] [-t threads]
+ *         [-r rules.json]
+ */
+public class ReparseTool {
+
+    private static final int WINDOW_RECORDS = 65536;
+    private static final int MAX_REGION = 1 << 30;
+    private static final int LEAF_RECORDS = 256;
+    private static final int MAX_REPORTED_CHANGES = 20;
+    private static final double MEGABYTE = 1024 * 1024;
+
+    private final TicketLineProcessor processor = new TicketLineProcessor();
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ForkJoinPool pool;
+    private final int threads;
+    private final ParserRules rules;
+
+    private long records;
+    private long lines;
+    private long failed;
+    private long bytes;
+    private long totalNanos;
+    private long parseNanos;
+    private long changed;
+    private long linesBefore;
+    private long linesAfter;
+    private long unmatched;
+    private final List<String> changes = new ArrayList<>();
+
+    /**
+     * @param threads   Number of threads parsing the records
+     */
+    public ReparseTool(int threads) {
+        this(threads, ParserRules.DEFAULT);
+    }
+
+    /**
+     * @param threads   Number of threads parsing the records
+     * @param rules     Rules to parse the records with
+     */
+    public ReparseTool(int threads, ParserRules rules) {
+        this.threads = threads;
+        this.rules = rules;
+        this.pool = new ForkJoinPool(threads);
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<String> files = new ArrayList<>();
+        int threads = Runtime.getRuntime().availableProcessors();
+        ParserRules rules = ParserRules.DEFAULT;
+        for (int i = 0; i < args.length; i++) {
+            if ("-t".equals(args[i]) && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if ("-r".equals(args[i]) && i + 1 < args.length) {
+                File file = new File(args[++i]);
+                ParserRuleSet ruleSet = new ObjectMapper().readValue(file, ParserRuleSet.class);
+                rules = ParserRules.compile(StringUtils.defaultIfBlank(ruleSet.getName(), file.getName()), ruleSet);
+            } else {
+                files.add(args[i]);
+            }
+        }
+        if (files.size() < 2 || files.size() > 3) {
+            System.err.println("Usage: ReparseTool <input> <output> [previous output] [-t threads] [-r rules]");
+            System.exit(1);
+        }
+        ReparseTool tool = new ReparseTool(threads, rules);
+        try {
+            tool.run(new File(files.get(0)), new File(files.get(1)), files.size() > 2 ? new File(files.get(2)) : null);
+        } finally {
+            tool.shutdown();
+        }
+        tool.printReport(System.out, files.size() > 2);
+    }
+
+    /**
+     * Parses every record of the input
+     *
+     * @param input     Raw OCR texts separated by form feeds
+     * @param output    File receiving a JSON line per record
+     * @param previous  Output of a previous run to compare with, may be null
+     *
+     * @throws IOException if any of the files cannot be read or written
+     */
+    public void run(File input, File output, File previous) throws IOException {
+        long start = System.nanoTime();
+        try (RecordFile file = new RecordFile(input, MAX_REGION);
+             OutputStream out = new BufferedOutputStream(new FileOutputStream(output), 1 << 16);
+             BufferedReader before = previous != null
+                     ? Files.newBufferedReader(previous.toPath(), StandardCharsets.UTF_8) : null) {
+            RecordFile.Window window;
+            while ((window = file.next(WINDOW_RECORDS)) != null) {
+                WindowResult result = new WindowResult(window);
+                if (before != null) {
+                    for (int i = 0; i < result.count; i++) {
+                        result.previous[i] = before.readLine();
+                    }
+                }
+                long parseStart = System.nanoTime();
+                try {
+                    pool.invoke(new ParseTask(result, 0, result.count));
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                parseNanos += System.nanoTime() - parseStart;
+                write(result, out, before != null);
+                bytes += window.getBytes();
+            }
+            if (before != null) {
+                while (before.readLine() != null) {
+                    unmatched++;
+                }
+            }
+        }
+        totalNanos = System.nanoTime() - start;
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Prints the throughput figures and, if the records have been compared, the changes found
+     *
+     * @param out       Stream receiving the report
+     * @param compared  True if a previous output was given
+     */
+    public void printReport(PrintStream out, boolean compared) {
+        double seconds = totalNanos / 1e9;
+        double megabytes = bytes / MEGABYTE;
+        out.println(String.format("rules        %s", rules));
+        out.println(String.format("records      %d (%d failed)", records, failed));
+        out.println(String.format("lines        %d", lines));
+        out.println(String.format("input        %.1f MB", megabytes));
+        out.println(String.format("elapsed      %.2f s, %.2f s parsing on %d threads", seconds,
+                parseNanos / 1e9, threads));
+        out.println(String.format("throughput   %.0f records/s, %.1f MB/s", records / seconds, megabytes / seconds));
+        if (!compared) {
+            return;
+        }
+        out.println(String.format("changed      %d of %d records, lines %d -> %d", changed, records, linesBefore,
+                linesAfter));
+        changes.forEach(change -> out.println("  " + change));
+        if (changed > changes.size()) {
+            out.println("  ...");
+        }
+        out.println(String.format("unmatched    %d", unmatched));
+    }
+
+    /**
+     * Writes the records of a window in order and adds them up
+     */
+    private void write(WindowResult result, OutputStream out, boolean compare) throws IOException {
+        for (int i = 0; i < result.count; i++) {
+            ReparsedRecord record = result.records[i];
+            out.write(result.json[i]);
+            out.write('\n');
+            records++;
+            if (record.getLines() != null) {
+                lines += record.getLines().size();
+            } else {
+                failed++;
+            }
+            if (!compare) {
+                continue;
+            }
+            ReparsedRecord before = result.before[i];
+            if (before == null) {
+                unmatched++;
+            } else if (result.changed[i]) {
+                changed++;
+                int countBefore = before.getLines() != null ? before.getLines().size() : 0;
+                int countAfter = record.getLines() != null ? record.getLines().size() : 0;
+                linesBefore += countBefore;
+                linesAfter += countAfter;
+                if (changes.size() < MAX_REPORTED_CHANGES) {
+                    changes.add(String.format("record %d: %d -> %d lines%s", record.getRecord(), countBefore,
+                            countAfter, record.getError() != null ? ", " + record.getError() : ""));
+                }
+            }
+        }
+    }
+
+    /**
+     * Parses a single record, comparing it with its previous output if any
+     */
+    private void parse(WindowResult result, int index) throws IOException {
+        long number = result.window.getFirstRecord() + index;
+        ReparsedRecord record;
+        try {
+            TicketLineBatch batch = new TicketLineBatch();
+            processor.processBatch(new ProcessContext(result.window.getText(index), rules), batch);
+            record = new ReparsedRecord(number, batch, null);
+        } catch (RuntimeException e) {
+            record = new ReparsedRecord(number, null, e.toString());
+        }
+        result.records[index] = record;
+        result.json[index] = mapper.writeValueAsBytes(record);
+
+        String previous = result.previous[index];
+        if (previous != null) {
+            ReparsedRecord before = mapper.readValue(previous, ReparsedRecord.class);
+            if (before.getRecord() != number) {
+                throw new IOException("Previous output holds record " + before.getRecord() + " instead of " + number);
+            }
+            result.before[index] = before;
+            result.changed[index] = !Objects.equals(before.getLines(), record.getLines())
+                    || !Objects.equals(before.getError(), record.getError());
+        }
+    }
+
+    /**
+     * Results of the records of a window, each slot written by a single task
+     */
+    private static class WindowResult {
+
+        private final RecordFile.Window window;
+        private final int count;
+        private final ReparsedRecord[] records;
+        private final byte[][] json;
+        private final String[] previous;
+        private final ReparsedRecord[] before;
+        private final boolean[] changed;
+
+        private WindowResult(RecordFile.Window window) {
+            this.window = window;
+            this.count = window.getCount();
+            this.records = new ReparsedRecord[count];
+            this.json = new byte[count][];
+            this.previous = new String[count];
+            this.before = new ReparsedRecord[count];
+            this.changed = new boolean[count];
+        }
+    }
+
+    /**
+     * Splits a range of records in halves until it is small enough to be parsed by a single thread
+     */
+    private class ParseTask extends RecursiveAction {
+
+        private final WindowResult result;
+        private final int from;
+        private final int to;
+
+        private ParseTask(WindowResult result, int from, int to) {
+            this.result = result;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= LEAF_RECORDS) {
+                try {
+                    for (int i = from; i < to; i++) {
+                        parse(result, i);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ParseTask(result, from, middle), new ParseTask(result, middle, to));
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.utility.api.core.tools;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.utility.api.entity.TicketLineBatch;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Output of {@link ReparseTool} for a single record, written as a JSON line. Records whose text could not be parsed
+ * carry the error instead of their lines
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ReparsedRecord {
+
+    private long record;
+    private TicketLineBatch lines;
+    private String error;
+
+}
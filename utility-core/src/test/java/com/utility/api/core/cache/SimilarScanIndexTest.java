@@ -0,0 +1,143 @@
+package com.utility.api.core.cache;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the multi-index search of {@link SimilarScanIndex} against a linear scan of the entries it should hold
+ */
+public class SimilarScanIndexTest {
+
+    private static final int THRESHOLD = 8;
+    private static final int CAPACITY = 500;
+    private static final float ASPECT_TOLERANCE = 0.1f;
+    private static final String[] CONTEXTS = {"SPA-fast-a", "ENG-fast-b"};
+    private static final float[] ASPECTS = {0.5f, 0.53f, 0.75f};
+
+    @Test
+    public void findMatchesLinearScan() {
+        Random random = new Random(25);
+        SimilarScanIndex index = new SimilarScanIndex(getProperties(true, THRESHOLD));
+        List<Entry> added = new ArrayList<>();
+        // Receipts photographed several times: each new entry is either a new hash or a few bits away from a recent one
+        for (int i = 0; i < 4 * CAPACITY; i++) {
+            long hash = added.isEmpty() || random.nextInt(3) == 0 ? random.nextLong() : getNearby(added, random);
+            Entry entry = new Entry(hash, ASPECTS[random.nextInt(ASPECTS.length)],
+                    CONTEXTS[random.nextInt(CONTEXTS.length)], getDigest(i));
+            index.add(entry.hash, entry.aspect, entry.context, entry.digest);
+            added.add(entry);
+
+            long query = random.nextInt(4) == 0 ? random.nextLong() : getNearby(added, random);
+            float aspect = ASPECTS[random.nextInt(ASPECTS.length)];
+            String context = CONTEXTS[random.nextInt(CONTEXTS.length)];
+            assertArrayEquals("Query " + i, findLinear(added, query, aspect, context),
+                    index.find(query, aspect, context));
+        }
+    }
+
+    @Test
+    public void overwrittenEntriesAreNotFound() {
+        SimilarScanIndex index = new SimilarScanIndex(getProperties(true, THRESHOLD));
+        long hash = 0x0123456789abcdefL;
+        index.add(hash, 1f, CONTEXTS[0], getDigest(0));
+        assertArrayEquals(getDigest(0), index.find(hash, 1f, CONTEXTS[0]));
+
+        Random random = new Random(7);
+        for (int i = 1; i < CAPACITY; i++) {
+            index.add(random.nextLong(), 1f, CONTEXTS[0], getDigest(i));
+        }
+        assertArrayEquals(getDigest(0), index.find(hash, 1f, CONTEXTS[0]));
+        // The next entry replaces the oldest one
+        index.add(random.nextLong(), 1f, CONTEXTS[0], getDigest(CAPACITY));
+        assertNull(index.find(hash, 1f, CONTEXTS[0]));
+    }
+
+    @Test
+    public void aspectRatioMustBeWithinTolerance() {
+        SimilarScanIndex index = new SimilarScanIndex(getProperties(true, THRESHOLD));
+        long hash = 0x0f0f0f0f0f0f0f0fL;
+        index.add(hash, SimilarScanIndex.getAspectRatio(1000, 2000), CONTEXTS[0], getDigest(1));
+        assertNotNull(index.find(hash, SimilarScanIndex.getAspectRatio(1060, 2000), CONTEXTS[0]));
+        assertNull(index.find(hash, SimilarScanIndex.getAspectRatio(1200, 2000), CONTEXTS[0]));
+        assertNull(index.find(hash, SimilarScanIndex.getAspectRatio(1000, 2000), CONTEXTS[1]));
+    }
+
+    @Test
+    public void disabledWithTheCache() {
+        SimilarScanIndex index = new SimilarScanIndex(getProperties(false, THRESHOLD));
+        assertFalse(index.isEnabled());
+        index.add(1L, 1f, CONTEXTS[0], getDigest(1));
+        assertNull(index.find(1L, 1f, CONTEXTS[0]));
+        assertTrue(new SimilarScanIndex(getProperties(true, THRESHOLD)).isEnabled());
+    }
+
+    /**
+     * Closest live entry within the threshold, the most recent one on ties, as {@link SimilarScanIndex#find} must
+     * return it
+     */
+    private static byte[] findLinear(List<Entry> added, long hash, float aspect, String context) {
+        Entry best = null;
+        int bestDistance = THRESHOLD;
+        for (int i = Math.max(0, added.size() - CAPACITY); i < added.size(); i++) {
+            Entry entry = added.get(i);
+            int distance = Long.bitCount(hash ^ entry.hash);
+            boolean similarAspect = Math.abs(aspect - entry.aspect)
+                    <= ASPECT_TOLERANCE * Math.max(aspect, entry.aspect);
+            if (entry.context.equals(context) && similarAspect && distance <= bestDistance) {
+                best = entry;
+                bestDistance = distance;
+            }
+        }
+        return best != null ? best.digest : null;
+    }
+
+    /**
+     * @return The hash of one of the entries added last, overwritten ones included, with up to 11 bits flipped
+     */
+    private static long getNearby(List<Entry> added, Random random) {
+        long hash = added.get(added.size() - 1 - random.nextInt(Math.min(added.size(), 2 * CAPACITY))).hash;
+        int bits = random.nextInt(12);
+        for (int i = 0; i < bits; i++) {
+            hash ^= 1L << random.nextInt(Long.SIZE);
+        }
+        return hash;
+    }
+
+    private static byte[] getDigest(int id) {
+        return ByteBuffer.allocate(32).putInt(id).array();
+    }
+
+    private static ScanCacheProperties getProperties(boolean enabled, int threshold) {
+        ScanCacheProperties properties = new ScanCacheProperties();
+        properties.setEnabled(enabled);
+        properties.setSimilarThreshold(threshold);
+        properties.setSimilarCapacity(CAPACITY);
+        properties.setSimilarAspectTolerance(ASPECT_TOLERANCE);
+        return properties;
+    }
+
+    private static class Entry {
+
+        final long hash;
+        final float aspect;
+        final String context;
+        final byte[] digest;
+
+        Entry(long hash, float aspect, String context, byte[] digest) {
+            this.hash = hash;
+            this.aspect = aspect;
+            this.context = context;
+            this.digest = digest;
+        }
+    }
+}
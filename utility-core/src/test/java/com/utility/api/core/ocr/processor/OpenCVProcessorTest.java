@@ -0,0 +1,106 @@
+package com.utility.api.core.ocr.processor;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Checks that binarizing an image in strips and blocks of rows gives the same pixels as binarizing the whole frame.
+ * Skipped if the OpenCV native libraries cannot be loaded
+ */
+public class OpenCVProcessorTest {
+
+    private static final String RECEIPT = "/ocr/receipt-01.jpg";
+
+    private static BufferedImage receipt;
+
+    @BeforeClass
+    public static void setUp() throws IOException {
+        assumeTrue(BinarizerConfiguration.isOpenCVAvailable());
+        try (InputStream input = OpenCVProcessorTest.class.getResourceAsStream(RECEIPT)) {
+            receipt = ImageIO.read(input);
+        }
+    }
+
+    @Test
+    public void stripsOfUnevenHeightMatchWholeFrame() throws IOException {
+        for (int threads = 2; threads <= 4; threads++) {
+            // One row more than a multiple of the strip count, so strips differ in height
+            int height = receipt.getHeight() - receipt.getHeight() % threads - threads + 1;
+            assertMatchesWholeFrame(crop(receipt, height), threads, 0);
+        }
+    }
+
+    @Test
+    public void blocksNarrowerThanHaloMatchWholeFrame() throws IOException {
+        int haloRows = new BinarizationFilters(new BinarizationProperties()).haloRows;
+        BufferedImage image = crop(receipt, receipt.getHeight() - 1);
+        assertMatchesWholeFrame(image, 1, 1);
+        assertMatchesWholeFrame(image, 1, image.getWidth() * haloRows);
+    }
+
+    @Test
+    public void stripsSplitInBlocksMatchWholeFrame() throws IOException {
+        int haloRows = new BinarizationFilters(new BinarizationProperties()).haloRows;
+        BufferedImage image = crop(receipt, receipt.getHeight() - 2);
+        assertMatchesWholeFrame(image, 3, image.getWidth() * haloRows);
+        assertMatchesWholeFrame(image, 4, 256 * 1024);
+    }
+
+    /**
+     * Binarizes an image with the given threads and block size, and on a single thread as a whole
+     */
+    private static void assertMatchesWholeFrame(BufferedImage image, int threads, int blockSize) throws IOException {
+        OpenCVProcessor wholeFrame = new OpenCVProcessor(getProperties(1, 0), null);
+        OpenCVProcessor tiled = new OpenCVProcessor(getProperties(threads, blockSize), null);
+        try {
+            BufferedImage expected = wholeFrame.getBinaryImage(image);
+            BufferedImage actual = tiled.getBinaryImage(image);
+            assertEquals(BufferedImage.TYPE_BYTE_GRAY, expected.getType());
+            assertEquals(BufferedImage.TYPE_BYTE_GRAY, actual.getType());
+            assertEquals(expected.getWidth(), actual.getWidth());
+            assertEquals(expected.getHeight(), actual.getHeight());
+            assertArrayEquals("Binarized on " + threads + " threads in blocks of " + blockSize + " bytes, "
+                    + image.getHeight() + " rows", pixels(expected), pixels(actual));
+        } finally {
+            wholeFrame.release();
+            tiled.release();
+        }
+    }
+
+    private static BinarizationProperties getProperties(int threads, int blockSize) {
+        BinarizationProperties properties = new BinarizationProperties();
+        properties.setThreads(threads);
+        properties.setBlockSize(blockSize);
+        properties.setTiledMinPixels(0);
+        return properties;
+    }
+
+    /**
+     * @return A copy of the top rows of an image, not sharing its raster
+     */
+    private static BufferedImage crop(BufferedImage image, int height) {
+        BufferedImage cropped = new BufferedImage(image.getWidth(), height, image.getType());
+        Graphics2D graphics = cropped.createGraphics();
+        try {
+            graphics.drawImage(image, 0, 0, null);
+        } finally {
+            graphics.dispose();
+        }
+        return cropped;
+    }
+
+    private static byte[] pixels(BufferedImage image) {
+        return ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+    }
+}
@@ -0,0 +1,101 @@
+package com.utility.api.core.processor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Golden output of the line parser. parser/golden-input.txt holds the lines of the sample receipts of the benchmarks
+ * followed by fuzzed lines, and parser/golden-expected.txt what the regex parser replaced by the line scanner made of
+ * each of them: "null" if no line was found, the line found, or "throws " followed by the name of the exception thrown
+ */
+public final class ParserGolden {
+
+    private static final String INPUT = "/parser/golden-input.txt";
+    private static final String EXPECTED = "/parser/golden-expected.txt";
+    private static final String NONE = "null";
+    private static final String THROWS = "throws ";
+
+    private final List<String> inputs;
+    private final List<String> expected;
+
+    private ParserGolden(List<String> inputs, List<String> expected) {
+        this.inputs = inputs;
+        this.expected = expected;
+    }
+
+    public static ParserGolden load() throws IOException {
+        List<String> inputs = readLines(INPUT);
+        List<String> expected = readLines(EXPECTED);
+        if (inputs.size() != expected.size()) {
+            throw new IllegalStateException("Golden input and expected output have different sizes");
+        }
+        return new ParserGolden(inputs, expected);
+    }
+
+    public int size() {
+        return inputs.size();
+    }
+
+    public String getInput(int index) {
+        return inputs.get(index);
+    }
+
+    public String getExpected(int index) {
+        return expected.get(index);
+    }
+
+    /**
+     * @return True if the regex parser threw an exception on the line
+     */
+    public boolean isFailure(int index) {
+        return expected.get(index).startsWith(THROWS);
+    }
+
+    /**
+     * @return True if the regex parser found a line
+     */
+    public boolean isFound(int index) {
+        return !isFailure(index) && !NONE.equals(expected.get(index));
+    }
+
+    /**
+     * Describes the outcome of parsing a single line as the expected output does
+     *
+     * @param parse     Parses the line, returning the line found or a list of the lines found
+     */
+    public static String describe(Supplier<?> parse) {
+        Object result;
+        try {
+            result = parse.get();
+        } catch (RuntimeException e) {
+            return THROWS + e.getClass().getSimpleName();
+        }
+        if (result instanceof List) {
+            List<?> lines = (List<?>) result;
+            if (lines.size() <= 1) {
+                return lines.isEmpty() ? NONE : String.valueOf(lines.get(0));
+            }
+        }
+        return String.valueOf(result);
+    }
+
+    private static List<String> readLines(String resource) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (InputStream input = ParserGolden.class.getResourceAsStream(resource)) {
+            if (input == null) {
+                throw new IOException("Missing test resource " + resource);
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,67 @@
+package com.utility.api.core.processor.impl;
+
+import com.utility.api.core.processor.ParserGolden;
+import com.utility.api.core.processor.ProcessContext;
+import com.utility.api.entity.TicketLine;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the line scanner against the golden output of the regex parser it replaced, see {@link ParserGolden}
+ */
+public class TicketLineProcessorTest {
+
+    private static ParserGolden golden;
+
+    private final TicketLineProcessor processor = new TicketLineProcessor();
+
+    @BeforeClass
+    public static void loadGolden() throws IOException {
+        golden = ParserGolden.load();
+    }
+
+    @Test
+    public void processListMatchesGoldenOutputLineByLine() {
+        for (int i = 0; i < golden.size(); i++) {
+            String input = golden.getInput(i);
+            assertEquals("Line " + (i + 1) + ": " + input, golden.getExpected(i),
+                    ParserGolden.describe(() -> processor.processList(new ProcessContext(input))));
+        }
+    }
+
+    @Test
+    public void processListMatchesGoldenOutputOnWholeText() {
+        StringBuilder text = new StringBuilder();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < golden.size(); i++) {
+            // A line the regex parser failed on would fail the whole text
+            if (golden.isFailure(i)) {
+                continue;
+            }
+            text.append(golden.getInput(i)).append('\n');
+            if (golden.isFound(i)) {
+                expected.add(golden.getExpected(i));
+            }
+        }
+        List<String> actual = new ArrayList<>();
+        for (TicketLine line : processor.processList(new ProcessContext(text.toString()))) {
+            actual.add(line.toString());
+        }
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void processSingleMatchesGoldenOutput() {
+        for (int i = 0; i < golden.size(); i++) {
+            String input = golden.getInput(i);
+            assertEquals("Line " + (i + 1) + ": " + input, golden.getExpected(i),
+                    ParserGolden.describe(() -> processor.processSingle(new ProcessContext(input))));
+        }
+    }
+}
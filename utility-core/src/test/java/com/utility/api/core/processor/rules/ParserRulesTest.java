@@ -0,0 +1,72 @@
+package com.utility.api.core.processor.rules;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.utility.api.core.processor.ParserGolden;
+import com.utility.api.core.processor.ProcessContext;
+import com.utility.api.core.processor.impl.TicketLineProcessor;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the built-in rules parse as the regex parser did and the ignored prefixes of the English rules
+ */
+public class ParserRulesTest {
+
+    private static ParserGolden golden;
+    private static ParserRules english;
+
+    private final TicketLineProcessor processor = new TicketLineProcessor();
+
+    @BeforeClass
+    public static void load() throws IOException {
+        golden = ParserGolden.load();
+        try (InputStream input = ParserRulesTest.class.getResourceAsStream("/rules/en.json")) {
+            english = ParserRules.compile(new ObjectMapper().readValue(input, ParserRuleSet.class));
+        }
+    }
+
+    @Test
+    public void defaultRulesMatchGoldenOutput() {
+        for (int i = 0; i < golden.size(); i++) {
+            String input = golden.getInput(i);
+            assertEquals("Line " + (i + 1) + ": " + input, golden.getExpected(i),
+                    ParserGolden.describe(() -> processor.processList(new ProcessContext(input, ParserRules.DEFAULT))));
+        }
+    }
+
+    @Test
+    public void fingerprintIgnoresName() {
+        assertEquals(ParserRules.DEFAULT.getFingerprint(),
+                ParserRules.compile("other", new ParserRuleSet()).getFingerprint());
+    }
+
+    @Test
+    public void prefixesAreIgnoredAsWholeWords() {
+        assertTrue(isIgnored(english, "TAX 0.80"));
+        assertTrue(isIgnored(english, "tax"));
+        assertTrue(isIgnored(english, "TOTAL: 12.40"));
+        assertTrue(isIgnored(english, "BALANCE DUE 3.00"));
+        assertFalse(isIgnored(english, "TAXI TOY 1 4.99"));
+        assertFalse(isIgnored(english, "CASHEWS 1 3.50"));
+        assertFalse(isIgnored(english, "BALANCE BAR 1 1.99"));
+        assertFalse(isIgnored(english, "TA"));
+    }
+
+    @Test
+    public void wholeWordPrefixesKeepProductLines() {
+        assertTrue(processor.processList(new ProcessContext("TAX 0.80", english)).isEmpty());
+        assertEquals(1, processor.processList(new ProcessContext("CASHEWS 3.50", english)).size());
+        assertEquals(1, processor.processList(new ProcessContext("BALANCE BAR 1.99", english)).size());
+    }
+
+    private static boolean isIgnored(ParserRules rules, String text) {
+        return rules.isIgnored(text.toCharArray(), 0, text.length());
+    }
+}
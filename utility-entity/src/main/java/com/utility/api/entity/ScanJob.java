@@ -0,0 +1,19 @@
+package com.utility.api.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScanJob {
+
+    private String id;
+    private ScanStatus status;
+    private Integer total;
+    private Integer completed;
+    private List<ScanResult> results;
+}
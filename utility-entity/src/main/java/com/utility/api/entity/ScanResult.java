@@ -0,0 +1,17 @@
+package com.utility.api.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScanResult {
+
+    private Integer index;
+    private ScanStatus status;
+    private List<TicketLine> lines;
+}
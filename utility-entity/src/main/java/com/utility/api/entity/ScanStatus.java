@@ -0,0 +1,9 @@
+package com.utility.api.entity;
+
+public enum ScanStatus {
+
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
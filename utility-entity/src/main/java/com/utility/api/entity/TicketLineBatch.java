@@ -0,0 +1,248 @@
+package com.utility.api.entity;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.utility.api.entity.json.TicketLineBatchDeserializer;
+import com.utility.api.entity.json.TicketLineBatchSerializer;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Columnar container of ticket lines. Every field is kept in its own primitive array, prices as cents, so adding a line
+ * only allocates its name and millions of lines don't mean millions of boxed values.
+ *
+ * Batches are serialized exactly as a list of {@link TicketLine}, the lines are only materialized as beans when asked
+ * for with {@link #get(int)} or {@link #asList()}. Instances are not thread-safe
+ */
+@JsonSerialize(using = TicketLineBatchSerializer.class)
+@JsonDeserialize(using = TicketLineBatchDeserializer.class)
+public class TicketLineBatch {
+
+    /** Position of the lines without one */
+    public static final int NO_POSITION = -1;
+
+    private static final int DEFAULT_CAPACITY = 16;
+    // Cents below this limit are exactly representable as floats
+    private static final long FLOAT_EXACT_LIMIT = 1L << 24;
+
+    private String[] names;
+    private int[] quantities;
+    private long[] prices;
+    private int[] positions;
+    private int size;
+
+    public TicketLineBatch() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity  Number of lines the batch holds before growing
+     */
+    public TicketLineBatch(int capacity) {
+        names = new String[capacity];
+        quantities = new int[capacity];
+        prices = new long[capacity];
+        positions = new int[capacity];
+    }
+
+    /**
+     * Copies a list of lines into a new batch
+     *
+     * @param lines     Lines with non null quantity and price
+     *
+     * @return The new batch
+     */
+    public static TicketLineBatch of(List<TicketLine> lines) {
+        TicketLineBatch batch = new TicketLineBatch(Math.max(lines.size(), 1));
+        lines.forEach(batch::add);
+        return batch;
+    }
+
+    /**
+     * Adds a line
+     *
+     * @param name          Name of the product
+     * @param quantity      Number of units
+     * @param priceCents    Unit price in cents
+     * @param position      Position of the line or {@link #NO_POSITION}
+     */
+    public void add(String name, int quantity, long priceCents, int position) {
+        if (size == names.length) {
+            int capacity = Math.max(size * 2, DEFAULT_CAPACITY);
+            names = Arrays.copyOf(names, capacity);
+            quantities = Arrays.copyOf(quantities, capacity);
+            prices = Arrays.copyOf(prices, capacity);
+            positions = Arrays.copyOf(positions, capacity);
+        }
+        names[size] = name;
+        quantities[size] = quantity;
+        prices[size] = priceCents;
+        positions[size] = position;
+        size++;
+    }
+
+    /**
+     * Adds a line given as a bean
+     *
+     * @param line  Line with non null quantity and price
+     */
+    public void add(TicketLine line) {
+        add(line.getName(), line.getQuantity(), toCents(line.getPrice()),
+                line.getPosition() != null ? line.getPosition() : NO_POSITION);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public String getName(int index) {
+        checkIndex(index);
+        return names[index];
+    }
+
+    public int getQuantity(int index) {
+        checkIndex(index);
+        return quantities[index];
+    }
+
+    /**
+     * @return Unit price of the line in cents
+     */
+    public long getPriceCents(int index) {
+        checkIndex(index);
+        return prices[index];
+    }
+
+    /**
+     * @return Position of the line, {@link #NO_POSITION} if it has none
+     */
+    public int getPosition(int index) {
+        checkIndex(index);
+        return positions[index];
+    }
+
+    public boolean hasPosition(int index) {
+        return getPosition(index) != NO_POSITION;
+    }
+
+    /**
+     * Materializes a line as a bean
+     *
+     * @param index     Index of the line
+     *
+     * @return A new bean holding the values of the line
+     */
+    public TicketLine get(int index) {
+        checkIndex(index);
+        int position = positions[index];
+        return new TicketLine(names[index], quantities[index], toPrice(prices[index]),
+                position != NO_POSITION ? position : null);
+    }
+
+    /**
+     * @return Read-only view of the batch materializing every line when accessed
+     */
+    public List<TicketLine> asList() {
+        return new AbstractList<TicketLine>() {
+            @Override
+            public TicketLine get(int index) {
+                return TicketLineBatch.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Converts cents to the float price of a {@link TicketLine}. The result is the float nearest to the exact decimal
+     * value, the same given by parsing the price or by {@link BigDecimal#floatValue()}
+     *
+     * @param cents     Price in cents
+     *
+     * @return Price in currency units
+     */
+    public static float toPrice(long cents) {
+        if (cents > -FLOAT_EXACT_LIMIT && cents < FLOAT_EXACT_LIMIT) {
+            // Division of two exactly representable values is correctly rounded
+            return (float) cents / 100f;
+        }
+        return BigDecimal.valueOf(cents, 2).floatValue();
+    }
+
+    /**
+     * Converts the float price of a {@link TicketLine} to cents, rounding HALF_UP over its exact binary value
+     *
+     * @param price     Price in currency units
+     *
+     * @return Price in cents
+     *
+     * @throws NumberFormatException if the price is infinite or NaN
+     * @throws ArithmeticException if the price in cents doesn't fit into a long
+     */
+    public static long toCents(float price) {
+        if (price >= 0 && price < FLOAT_EXACT_LIMIT) {
+            // The value times 100 is exact as a double, so only the final rounding takes place
+            return (long) Math.floor((double) price * 100 + 0.5);
+        }
+        return new BigDecimal(price).setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Batches are equal when they hold the same lines in the same order, whatever their capacity
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TicketLineBatch)) {
+            return false;
+        }
+        TicketLineBatch other = (TicketLineBatch) o;
+        if (size != other.size) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (quantities[i] != other.quantities[i] || prices[i] != other.prices[i]
+                    || positions[i] != other.positions[i] || !Objects.equals(names[i], other.names[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = size;
+        for (int i = 0; i < size; i++) {
+            hash = 31 * hash + Objects.hashCode(names[i]);
+            hash = 31 * hash + quantities[i];
+            hash = 31 * hash + Long.hashCode(prices[i]);
+            hash = 31 * hash + positions[i];
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return asList().toString();
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.utility.api.entity.json;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.utility.api.entity.TicketLine;
+import com.utility.api.entity.TicketLineBatch;
+
+import java.io.IOException;
+
+/**
+ * Reads an array of {@link TicketLine} objects into a {@link TicketLineBatch} without materializing the lines. Unknown
+ * fields are skipped, missing quantities and prices are read as zero
+ */
+public class TicketLineBatchDeserializer extends StdDeserializer<TicketLineBatch> {
+
+    public TicketLineBatchDeserializer() {
+        super(TicketLineBatch.class);
+    }
+
+    @Override
+    public TicketLineBatch deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        if (!parser.isExpectedStartArrayToken()) {
+            return (TicketLineBatch) context.handleUnexpectedToken(TicketLineBatch.class, parser);
+        }
+        TicketLineBatch batch = new TicketLineBatch();
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            String name = null;
+            int quantity = 0;
+            long price = 0;
+            int position = TicketLineBatch.NO_POSITION;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if (value == JsonToken.VALUE_NULL) {
+                    continue;
+                }
+                switch (field) {
+                    case TicketLineFields.NAME:
+                        name = parser.getText();
+                        break;
+                    case TicketLineFields.QUANTITY:
+                        quantity = parser.getValueAsInt();
+                        break;
+                    case TicketLineFields.PRICE:
+                        price = TicketLineBatch.toCents(parser.getFloatValue());
+                        break;
+                    case TicketLineFields.POSITION:
+                        position = parser.getValueAsInt();
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+            batch.add(name, quantity, price, position);
+        }
+        if (!parser.hasToken(JsonToken.END_ARRAY)) {
+            return (TicketLineBatch) context.handleUnexpectedToken(TicketLineBatch.class, parser);
+        }
+        return batch;
+    }
+}
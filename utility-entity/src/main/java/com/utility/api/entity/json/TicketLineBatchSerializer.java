@@ -0,0 +1,39 @@
+package com.utility.api.entity.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.utility.api.entity.TicketLine;
+import com.utility.api.entity.TicketLineBatch;
+
+import java.io.IOException;
+
+/**
+ * Writes a {@link TicketLineBatch} as an array of {@link TicketLine} objects straight from its columns, without
+ * materializing the lines
+ */
+public class TicketLineBatchSerializer extends StdSerializer<TicketLineBatch> {
+
+    public TicketLineBatchSerializer() {
+        super(TicketLineBatch.class);
+    }
+
+    @Override
+    public void serialize(TicketLineBatch batch, JsonGenerator generator, SerializerProvider provider)
+            throws IOException {
+        generator.writeStartArray();
+        for (int i = 0; i < batch.size(); i++) {
+            generator.writeStartObject();
+            generator.writeStringField(TicketLineFields.NAME, batch.getName(i));
+            generator.writeNumberField(TicketLineFields.QUANTITY, batch.getQuantity(i));
+            generator.writeNumberField(TicketLineFields.PRICE, TicketLineBatch.toPrice(batch.getPriceCents(i)));
+            if (batch.hasPosition(i)) {
+                generator.writeNumberField(TicketLineFields.POSITION, batch.getPosition(i));
+            } else {
+                generator.writeNullField(TicketLineFields.POSITION);
+            }
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+    }
+}
@@ -0,0 +1,15 @@
+package com.utility.api.entity.json;
+
+/**
+ * JSON field names of a {@link com.utility.api.entity.TicketLine}
+ */
+final class TicketLineFields {
+
+    static final String NAME = "name";
+    static final String QUANTITY = "quantity";
+    static final String PRICE = "price";
+    static final String POSITION = "position";
+
+    private TicketLineFields() {
+    }
+}
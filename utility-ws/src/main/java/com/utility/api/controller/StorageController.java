@@ -1,30 +1,232 @@
 package com.utility.api.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.utility.api.core.ocr.exception.UploadTooLargeException;
+import com.utility.api.core.service.exception.InvalidScanRequestException;
+import com.utility.api.core.service.exception.ScanRejectedException;
+import com.utility.api.entity.ScanJob;
 import com.utility.api.entity.TicketLine;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import com.utility.api.core.service.ScanOptions;
+import com.utility.api.core.service.ScanUpload;
 import com.utility.api.core.service.StorageScannerService;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @RestController
 @RequestMapping("/storage")
 class StorageController {
 
+    private static final String NDJSON_VALUE = "application/x-ndjson";
+    private static final byte[] NDJSON_END = "\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SSE_DATA = "data: ".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SSE_ERROR = "event: error\ndata: ".getBytes(StandardCharsets.UTF_8);
+    private static final String ERROR_FIELD = "error";
+    private static final String SCAN_FAILED = "Could not scan image";
+    private static final byte[] SSE_END = "\n\n".getBytes(StandardCharsets.UTF_8);
+
     private final StorageScannerService scannerService;
+    private final ObjectMapper mapper;
 
     @Autowired
-    public StorageController(StorageScannerService scannerService) {
+    public StorageController(StorageScannerService scannerService, ObjectMapper mapper) {
         this.scannerService = scannerService;
+        this.mapper = mapper;
     }
 
+    /**
+     * Scans an image on the compute threads. The request thread is released right away and the response is written
+     * once the scan completes, so pending uploads don't hold any thread. The scan is cancelled if the request times out
+     * or ends before it, so it no longer holds a place in the queue
+     */
     @PostMapping("/scan")
-    public List<TicketLine> scan(@RequestBody MultipartFile file) throws IOException {
-        return scannerService.scan(file.getBytes());
+    public DeferredResult<List<TicketLine>> scan(@RequestBody MultipartFile file,
+            @RequestParam(value = "profile", required = false) String profile,
+            @RequestParam(value = "locale", required = false) String locale,
+            @RequestParam(value = "rules", required = false) String rules)
+            throws IOException, ScanRejectedException {
+        CompletableFuture<List<TicketLine>> future = scannerService.scanAsync(file.getInputStream(),
+                new ScanOptions(profile, locale, rules));
+        DeferredResult<List<TicketLine>> result = new DeferredResult<>();
+        result.onTimeout(() -> future.cancel(false));
+        result.onCompletion(() -> future.cancel(false));
+        future.whenComplete((lines, e) -> {
+            if (e == null) {
+                result.setResult(lines);
+            } else if (!future.isCancelled()) {
+                result.setErrorResult(e instanceof CompletionException ? e.getCause() : e);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Streams the lines of an image as newline delimited JSON, one line as soon as it is recognized
+     */
+    @PostMapping(value = "/scan/stream", produces = NDJSON_VALUE)
+    public ResponseEntity<ResponseBodyEmitter> scanNdjson(@RequestBody MultipartFile file,
+            @RequestParam(value = "profile", required = false) String profile,
+            @RequestParam(value = "locale", required = false) String locale,
+            @RequestParam(value = "rules", required = false) String rules)
+            throws IOException, ScanRejectedException {
+        return stream(file, new ScanOptions(profile, locale, rules), MediaType.parseMediaType(NDJSON_VALUE), null, null,
+                NDJSON_END);
+    }
+
+    /**
+     * Streams the lines of an image as server-sent events, one line as soon as it is recognized
+     */
+    @PostMapping(value = "/scan/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<ResponseBodyEmitter> scanEvents(@RequestBody MultipartFile file,
+            @RequestParam(value = "profile", required = false) String profile,
+            @RequestParam(value = "locale", required = false) String locale,
+            @RequestParam(value = "rules", required = false) String rules)
+            throws IOException, ScanRejectedException {
+        return stream(file, new ScanOptions(profile, locale, rules), MediaType.TEXT_EVENT_STREAM, SSE_DATA, SSE_ERROR,
+                SSE_END);
+    }
+
+    @PostMapping("/batch")
+    public ResponseEntity<ScanJob> submit(@RequestParam("files") List<MultipartFile> files,
+                                          @RequestParam(value = "profile", required = false) String profile,
+                                          @RequestParam(value = "locale", required = false) String locale,
+                                          @RequestParam(value = "rules", required = false) String rules)
+            throws IOException, ScanRejectedException {
+        // Uploads are only read once the batch is admitted, so rejected batches never reach the heap
+        List<ScanUpload> images = new ArrayList<>(files.size());
+        for (MultipartFile file : files) {
+            images.add(toUpload(file));
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(scannerService.submit(images, new ScanOptions(profile, locale, rules)));
+    }
+
+    @GetMapping("/batch/{id}")
+    public ResponseEntity<ScanJob> getJob(@PathVariable String id) {
+        ScanJob job = scannerService.getJob(id);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(job);
+    }
+
+    private static ScanUpload toUpload(MultipartFile file) {
+        return new ScanUpload() {
+            @Override
+            public long getSize() {
+                return file.getSize();
+            }
+
+            @Override
+            public InputStream getInputStream() throws IOException {
+                return file.getInputStream();
+            }
+        };
+    }
+
+    /**
+     * Writes every line as JSON between a prefix and a suffix, flushing after each one so clients get it right away.
+     * Lines are sent from the compute thread running the scan, no thread is held while waiting for them. Rejected
+     * scans and invalid options are reported before the response starts. The scan is cancelled if the response times
+     * out or ends before it.
+     * A scan failing once the response has started can no longer change its status, so an error record is written
+     * after the lines already sent, as {"error": message} between the error prefix and the suffix, before the response
+     * ends. Clients tell a complete stream from a failed one by that record
+     *
+     * @param errorPrefix   Written before the error record instead of the prefix, null to use the prefix
+     */
+    private ResponseEntity<ResponseBodyEmitter> stream(MultipartFile file, ScanOptions options, MediaType type,
+                                                       byte[] prefix, byte[] errorPrefix, byte[] suffix)
+            throws IOException, ScanRejectedException {
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter();
+        CompletableFuture<Void> future = scannerService.scanAsync(file.getInputStream(), options,
+                line -> send(emitter, line, prefix, suffix));
+        emitter.onTimeout(() -> future.cancel(false));
+        emitter.onCompletion(() -> future.cancel(false));
+        future.whenComplete((result, e) -> {
+            if (future.isCancelled()) {
+                return;
+            }
+            if (e == null) {
+                emitter.complete();
+                return;
+            }
+            Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+            if (cause instanceof UncheckedIOException) {
+                // The client is gone, nothing else can be written
+                emitter.completeWithError(cause.getCause());
+                return;
+            }
+            try {
+                send(emitter, Collections.singletonMap(ERROR_FIELD, getErrorMessage(cause)),
+                        errorPrefix != null ? errorPrefix : prefix, suffix);
+                emitter.complete();
+            } catch (UncheckedIOException | IllegalStateException sendError) {
+                emitter.completeWithError(cause);
+            }
+        });
+        return ResponseEntity.ok().contentType(type).body(emitter);
+    }
+
+    /**
+     * Only the messages written for clients are sent, those of other exceptions may reveal internals
+     */
+    private static String getErrorMessage(Throwable e) {
+        return e instanceof UploadTooLargeException ? e.getMessage() : SCAN_FAILED;
+    }
+
+    private void send(ResponseBodyEmitter emitter, Object value, byte[] prefix, byte[] suffix) {
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            if (prefix != null) {
+                output.write(prefix);
+            }
+            output.write(mapper.writeValueAsBytes(value));
+            output.write(suffix);
+            emitter.send(output.toByteArray(), MediaType.APPLICATION_OCTET_STREAM);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @ExceptionHandler(ScanRejectedException.class)
+    public ResponseEntity<String> rejected(ScanRejectedException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfter()))
+                .body(e.getMessage());
+    }
+
+    @ExceptionHandler(UploadTooLargeException.class)
+    public ResponseEntity<String> tooLarge(UploadTooLargeException e) {
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(e.getMessage());
+    }
+
+    @ExceptionHandler(InvalidScanRequestException.class)
+    public ResponseEntity<String> badRequest(InvalidScanRequestException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
     }
 }